@@ -0,0 +1,8 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+/**
+ * Fired after a set-based update or delete: these bypass the persistence context and the entity listeners, so
+ * whatever mirrors {@code entityClass} rows has to be refreshed by observing this event.
+ */
+public record BulkWrite(Class<?> entityClass) {
+}
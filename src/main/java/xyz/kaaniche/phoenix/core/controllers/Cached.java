@@ -0,0 +1,21 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+import jakarta.inject.Qualifier;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opts an {@link IGenericDAO} bean into the {@link CachingDecorator}. The bean is then injected with this
+ * qualifier too. No DAO of this application opts in: tenants and grants, the hot reads, are served from memory by
+ * the IAM {@code TenantCache} and {@code GrantIndex}.
+ */
+@Qualifier
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER})
+public @interface Cached {
+}
@@ -0,0 +1,95 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+import jakarta.annotation.Priority;
+import jakarta.decorator.Decorator;
+import jakarta.decorator.Delegate;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import xyz.kaaniche.phoenix.core.entities.RootEntity;
+
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Serves {@link #findById} and {@link #find} of {@link Cached} DAOs from the {@link EntityCache} of their entity
+ * type, and drops entries on every write going through the DAO, again once its transaction completes, see
+ * {@link EntityCaches}. A miss returns the managed entity as usual, a hit a detached snapshot. Set-based writes
+ * clear the cache through {@link BulkWrite}. Runs after the authorization checks.
+ */
+@Decorator
+@Priority(Interceptor.Priority.APPLICATION + 10)
+public abstract class CachingDecorator<ID extends Serializable, E extends RootEntity<ID>>
+    implements IGenericDAO<ID, E> {
+
+    @Inject
+    @Delegate
+    @Cached
+    private IGenericDAO<ID, E> delegate;
+
+    @Inject
+    private EntityCaches entityCaches;
+
+    @Override
+    public Optional<E> findById(ID id) {
+        if (!entityCaches.isCacheable(delegate.getEntityClass())) {
+            return delegate.findById(id);
+        }
+        EntityCache<ID, E> cache = cache();
+        E cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<E> entity = delegate.findById(id);
+        entity.ifPresent(e -> cache.put(id, e));
+        return entity;
+    }
+
+    @Override
+    public E find(ID id) {
+        return findById(id).orElse(null);
+    }
+
+    @Override
+    public <S extends E> S save(S entity) {
+        S saved = delegate.save(entity);
+        written(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public int saveAll(Iterable<? extends E> entities) {
+        int count = delegate.saveAll(entities);
+        // the iterable may be single use: drop the whole type rather than walk it again
+        entityCaches.writtenAll(delegate.getEntityClass());
+        return count;
+    }
+
+    @Override
+    public E edit(ID id, Consumer<E> updateFewAttributes) {
+        E edited = delegate.edit(id, updateFewAttributes);
+        written(id);
+        return edited;
+    }
+
+    @Override
+    public E update(E entity) {
+        E updated = delegate.update(entity);
+        written(entity.getId());
+        return updated;
+    }
+
+    @Override
+    public void delete(E entity) {
+        delegate.delete(entity);
+        written(entity.getId());
+    }
+
+    private void written(ID id) {
+        entityCaches.written(delegate.getEntityClass(), id);
+    }
+
+    private EntityCache<ID, E> cache() {
+        return entityCaches.of(delegate.getEntityClass());
+    }
+}
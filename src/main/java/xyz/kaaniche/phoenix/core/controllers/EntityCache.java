@@ -0,0 +1,147 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of entity snapshots by id, for one entity type. Snapshots are shallow copies of the entity fields:
+ * the cache never hands out, nor keeps, an instance attached to a persistence context, and every hit gets its own
+ * copy. Associated entities are shared between copies and are to be treated as read-only.
+ * <p>
+ * Entries live {@code ttl} seconds, which bounds staleness for rows written around the DAO.
+ */
+public final class EntityCache<ID, E> {
+
+    private record Entry<E>(E snapshot, long expiresAt) {
+    }
+
+    private final Class<E> type;
+    private final int maxSize;
+    private final long ttl;
+    private final Constructor<E> constructor;
+    private final VarHandle[] fields;
+
+    private final ConcurrentHashMap<ID, Entry<E>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EntityCache(Class<E> type, int maxSize, long ttl) {
+        this.type = type;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            List<VarHandle> handles = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                        handles.add(lookup.unreflectVarHandle(field));
+                    }
+                }
+            }
+            fields = handles.toArray(VarHandle[]::new);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(type.getName() + " can't be snapshot", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttl > 0;
+    }
+
+    /**
+     * @return a copy of the cached entity, null on miss
+     */
+    public E get(ID id) {
+        return get(id, Instant.now().getEpochSecond());
+    }
+
+    E get(ID id, long now) {
+        Entry<E> entry = entries.get(id);
+        if (entry != null && entry.expiresAt() <= now) {
+            entries.remove(id, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.snapshot());
+    }
+
+    public void put(ID id, E entity) {
+        put(id, entity, Instant.now().getEpochSecond());
+    }
+
+    void put(ID id, E entity, long now) {
+        if (!isEnabled() || id == null || entity == null) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(e -> e.expiresAt() <= now);
+        }
+        if (entries.size() >= maxSize) {
+            // still full: make room by dropping an arbitrary entry
+            Iterator<ID> it = entries.keySet().iterator();
+            if (it.hasNext()) {
+                entries.remove(it.next());
+            }
+        }
+        entries.put(id, new Entry<>(copy(entity), now + ttl));
+    }
+
+    public void invalidate(ID id) {
+        if (id != null) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private E copy(E entity) {
+        try {
+            E copy = constructor.newInstance();
+            for (VarHandle field : fields) {
+                field.set(copy, field.get(entity));
+            }
+            return copy;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't snapshot " + type.getName(), e);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits over lookups, 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,150 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Singleton;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link EntityCache}s of the {@link Cached} DAOs, one per entity type, sized and timed by
+ * <pre>
+ * cache.&lt;Entity&gt;.size=1024
+ * cache.&lt;Entity&gt;.ttl=60
+ * </pre>
+ * where {@code <Entity>} is the entity simple class name and the ttl is in seconds. A zero size or ttl disables
+ * the cache of the type.
+ * <p>
+ * Writes made in a transaction drop their entries right away and once more when it completes, since readers may
+ * cache the committed rows meanwhile. Until then the transaction itself bypasses the caches of the types it wrote:
+ * it would neither see its own writes in them nor should it publish rows that may never commit.
+ */
+@Singleton
+public class EntityCaches {
+
+    private final Config config = ConfigProvider.getConfig();
+
+    private final ConcurrentHashMap<Class<?>, EntityCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    @SuppressWarnings("unchecked")
+    public <ID, E> EntityCache<ID, E> of(Class<E> type) {
+        return (EntityCache<ID, E>) caches.computeIfAbsent(type, t -> new EntityCache<>(type,
+                config.getOptionalValue("cache." + type.getSimpleName() + ".size", Integer.class).orElse(1024),
+                config.getOptionalValue("cache." + type.getSimpleName() + ".ttl", Long.class).orElse(60L)));
+    }
+
+    /**
+     * @return false when the current transaction wrote entities of {@code type}
+     */
+    public boolean isCacheable(Class<?> type) {
+        PendingWrites pending = pending(false);
+        return pending == null || !pending.types.containsKey(type);
+    }
+
+    /**
+     * Drops the entry of an entity written through its DAO, now and after the current transaction.
+     */
+    public void written(Class<?> type, Object id) {
+        invalidate(type, id);
+        PendingWrites pending = pending(true);
+        // a type already cleared by a bulk write stays cleared as a whole
+        if (pending != null && (!pending.types.containsKey(type) || pending.types.get(type) != null)) {
+            pending.types.computeIfAbsent(type, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * @return the hit ratio of each cache, by entity simple class name
+     */
+    public Map<String, Double> getHitRatios() {
+        Map<String, Double> ratios = new TreeMap<>();
+        caches.forEach((type, cache) -> ratios.put(type.getSimpleName(), cache.getHitRatio()));
+        return ratios;
+    }
+
+    /**
+     * Drops every entry of the type, now and after the current transaction.
+     */
+    public void writtenAll(Class<?> type) {
+        invalidate(type, null);
+        PendingWrites pending = pending(true);
+        if (pending != null) {
+            // null: every entity of the type
+            pending.types.put(type, null);
+        }
+    }
+
+    public void onBulkWrite(@Observes BulkWrite write) {
+        writtenAll(write.entityClass());
+    }
+
+    /**
+     * @param id null for every entity of {@code type}
+     */
+    @SuppressWarnings("unchecked")
+    private void invalidate(Class<?> type, Object id) {
+        EntityCache<Object, ?> cache = (EntityCache<Object, ?>) caches.get(type);
+        if (cache == null) {
+            return;
+        }
+        if (id == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * @return the writes of the current transaction, null outside of one
+     */
+    private PendingWrites pending(boolean create) {
+        if (transactions == null || transactions.getTransactionKey() == null) {
+            return null;
+        }
+        PendingWrites pending = (PendingWrites) transactions.getResource(PendingWrites.class);
+        if (pending == null && create) {
+            pending = new PendingWrites();
+            transactions.putResource(PendingWrites.class, pending);
+            if (transactions.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                transactions.registerInterposedSynchronization(pending);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Entity ids written by one transaction, by type, a null set standing for every entity of the type.
+     */
+    private final class PendingWrites implements Synchronization {
+        private final Map<Class<?>, Set<Object>> types = new HashMap<>();
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // after a rollback as well: entries cached meanwhile are right, dropping them is merely a miss
+            types.forEach((type, ids) -> {
+                if (ids == null) {
+                    invalidate(type, null);
+                } else {
+                    ids.forEach(id -> invalidate(type, id));
+                }
+            });
+        }
+    }
+}
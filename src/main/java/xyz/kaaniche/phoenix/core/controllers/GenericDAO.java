@@ -1,14 +1,31 @@
 package xyz.kaaniche.phoenix.core.controllers;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.core.entities.RootEntity;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Type;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Generic Data Access Object for CRUD operations.
@@ -23,10 +40,17 @@ public class GenericDAO<ID extends Serializable, E extends RootEntity<ID>> imple
 
     private final Class<E> entityClass;
 
+    private final int fetchSize = ConfigProvider.getConfig().getOptionalValue("dao.stream.fetch.size", Integer.class).orElse(500);
+    private final int batchSize = ConfigProvider.getConfig().getOptionalValue("dao.batch.size", Integer.class).orElse(50);
+
+    @Inject
+    private Event<BulkWrite> bulkWrites;
+
     @SuppressWarnings("unchecked")
     public GenericDAO() {
+        // <ID, E>: the entity is the second type argument
         this.entityClass = (Class<E>) ((ParameterizedType) getClass()
-                .getGenericSuperclass()).getActualTypeArguments()[0];
+                .getGenericSuperclass()).getActualTypeArguments()[1];
     }
 
     public <S extends E> S save(S entity) {
@@ -38,18 +62,85 @@ public class GenericDAO<ID extends Serializable, E extends RootEntity<ID>> imple
         return Optional.ofNullable(entityManager.find(entityClass, id));
     }
 
+    /**
+     * Persists the entities, flushing and clearing the persistence context every {@code dao.batch.size} of them so
+     * that inserts go out as JDBC batches and memory stays bounded. Saved entities end up detached.
+     *
+     * @return how many entities were saved
+     */
+    public int saveAll(Iterable<? extends E> entities) {
+        int count = 0;
+        for (E entity : entities) {
+            entityManager.persist(entity);
+            if (++count % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return count;
+    }
+
     public E edit(ID id, Consumer<E> updateFewAttributes) {
+        // the found entity is managed: its changes are written on flush
         E entity = entityManager.find(entityClass, id);
         if (entity != null) {
             updateFewAttributes.accept(entity);
-            entity = entityManager.merge(entity);
         }
         return entity;
     }
 
     public void delete(E entity) {
-        E managed = entityManager.merge(entity);
-        entityManager.remove(managed);
+        // removing only needs the id, not a copy of the detached state
+        entityManager.remove(entityManager.contains(entity) ? entity : entityManager.getReference(entityClass, entity.getId()));
+    }
+
+    /**
+     * Set-based update, without loading the entities: sets the {@code set} attributes on every row whose
+     * attributes equal the {@code where} values, all rows for an empty {@code where}.
+     *
+     * @return how many rows were updated
+     */
+    public int updateWhere(Map<String, ?> where, Map<String, ?> set) {
+        if (set.isEmpty()) {
+            return 0;
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<E> update = cb.createCriteriaUpdate(entityClass);
+        Root<E> root = update.from(entityClass);
+        set.forEach(update::set);
+        update.where(equalities(cb, root, where));
+        return bulk(entityManager.createQuery(update).executeUpdate());
+    }
+
+    /**
+     * Set-based delete, without loading the entities: deletes every row whose attributes equal the
+     * {@code where} values, all rows for an empty {@code where}.
+     *
+     * @return how many rows were deleted
+     */
+    public int deleteWhere(Map<String, ?> where) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaDelete<E> delete = cb.createCriteriaDelete(entityClass);
+        Root<E> root = delete.from(entityClass);
+        delete.where(equalities(cb, root, where));
+        return bulk(entityManager.createQuery(delete).executeUpdate());
+    }
+
+    private static Predicate[] equalities(CriteriaBuilder cb, Root<?> root, Map<String, ?> where) {
+        return where.entrySet().stream()
+                .map(e -> e.getValue() == null ? cb.isNull(root.get(e.getKey())) : cb.equal(root.get(e.getKey()), e.getValue()))
+                .toArray(Predicate[]::new);
+    }
+
+    // managed entities may hold stale state once the rows changed underneath
+    private int bulk(int rows) {
+        entityManager.clear();
+        if (rows > 0) {
+            bulkWrites.fire(new BulkWrite(entityClass));
+        }
+        return rows;
     }
 
     public Class<E> getEntityClass() {
@@ -61,8 +152,69 @@ public class GenericDAO<ID extends Serializable, E extends RootEntity<ID>> imple
     }
 
     public List<E> findAll() {
-        return entityManager.createQuery("SELECT e FROM " + entityClass.getSimpleName() + " e", entityClass)
-                .getResultList();
+        CriteriaQuery<E> query = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        return entityManager.createQuery(query.select(query.from(entityClass))).getResultList();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public Stream<E> streamAll() {
+        return streamAll(fetchSize);
+    }
+
+    /**
+     * Reads the whole table through a forward-only cursor, {@code fetchSize} rows per round trip. The persistence
+     * context is flushed first, then cleared every {@code fetchSize} entities so that memory stays bounded: streamed
+     * entities, and any loaded before, end up detached and are to be changed through {@link #edit} or {@link #update}.
+     * <p>
+     * The cursor lives as long as the caller's transaction, the stream is to be closed once consumed.
+     * <p>
+     * MySQL Connector/J ignores the fetch size and buffers the whole result set in memory unless the connection uses
+     * server-side cursors: the datasource must set the {@code useCursorFetch=true} connection property, see the
+     * README. The driver's row-by-row mode ({@code Integer.MIN_VALUE} fetch size) isn't an option here, it forbids
+     * the secondary selects of eager associations while the stream is open.
+     */
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public Stream<E> streamAll(int fetchSize) {
+        entityManager.flush();
+        CriteriaQuery<E> query = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        AtomicInteger count = new AtomicInteger();
+        return entityManager.createQuery(query.select(query.from(entityClass)))
+                .setHint("org.hibernate.fetchSize", fetchSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream()
+                .peek(e -> {
+                    if (count.incrementAndGet() % fetchSize == 0) {
+                        entityManager.clear();
+                    }
+                });
+    }
+
+    /**
+     * Keyset pagination: the page after {@code after} in id order, so that reading page n costs the same as
+     * reading the first one. Pass the id of the last entity of a page to get the next one.
+     *
+     * @param after null for the first page
+     * @throws UnsupportedOperationException for entities with a compound id
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<E> findPage(ID after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<E> query = cb.createQuery(entityClass);
+        Root<E> root = query.from(entityClass);
+        Path<Comparable> id = root.get(idAttribute());
+        query.select(root).orderBy(cb.asc(id));
+        if (after != null) {
+            query.where(cb.greaterThan(id, (Comparable) after));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    private String idAttribute() {
+        EntityType<E> type = entityManager.getMetamodel().entity(entityClass);
+        if (!type.hasSingleIdAttribute() || type.getIdType().getPersistenceType() != Type.PersistenceType.BASIC) {
+            throw new UnsupportedOperationException("Keyset pagination needs a basic id, " + entityClass.getSimpleName() + " has a compound one");
+        }
+        return type.getId(type.getIdType().getJavaType()).getName();
     }
 
     public E update(E entity) {
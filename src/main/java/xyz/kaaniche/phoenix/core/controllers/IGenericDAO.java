@@ -3,8 +3,10 @@ package xyz.kaaniche.phoenix.core.controllers;
 import xyz.kaaniche.phoenix.core.entities.RootEntity;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Generic Data Access Object interface for CRUD operations.
@@ -14,18 +16,49 @@ import java.util.function.Consumer;
 public interface IGenericDAO<ID extends Serializable, E extends RootEntity<ID>> {
     
     <S extends E> S save(S entity);
+
+    /**
+     * @return how many entities were saved
+     */
+    int saveAll(Iterable<? extends E> entities);
     
     Optional<E> findById(ID id);
     
     E edit(ID id, Consumer<E> updateFewAttributes);
     
     void delete(E entity);
+
+    /**
+     * Set-based update of the rows matching {@code where}, see {@link BulkWrite}.
+     *
+     * @return how many rows were updated
+     */
+    int updateWhere(Map<String, ?> where, Map<String, ?> set);
+
+    /**
+     * Set-based delete of the rows matching {@code where}, see {@link BulkWrite}.
+     *
+     * @return how many rows were deleted
+     */
+    int deleteWhere(Map<String, ?> where);
     
     Class<E> getEntityClass();
     
     E find(ID id);
     
     List<E> findAll();
+
+    /**
+     * Streams the whole table without materializing it, within the caller's transaction. Close the stream.
+     */
+    Stream<E> streamAll();
+
+    Stream<E> streamAll(int fetchSize);
+
+    /**
+     * @return at most {@code limit} entities with an id greater than {@code after}, in id order
+     */
+    List<E> findPage(ID after, int limit);
     
     E update(E entity);
 }
@@ -1,17 +1,23 @@
 package xyz.kaaniche.phoenix.iam.boundaries;
 
+import jakarta.ejb.EJB;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
+import xyz.kaaniche.phoenix.iam.controllers.LoginProjection;
 import xyz.kaaniche.phoenix.iam.controllers.PhoenixIAMRepository;
-import xyz.kaaniche.phoenix.iam.entities.Grant;
-import xyz.kaaniche.phoenix.iam.entities.Identity;
-import xyz.kaaniche.phoenix.iam.entities.Tenant;
+import xyz.kaaniche.phoenix.iam.controllers.ScopeDictionary;
+import xyz.kaaniche.phoenix.iam.controllers.ScopeRegistry;
+import xyz.kaaniche.phoenix.iam.controllers.TenantSnapshot;
 import xyz.kaaniche.phoenix.iam.security.Argon2Utility;
 import xyz.kaaniche.phoenix.iam.security.AuthorizationCode;
+import xyz.kaaniche.phoenix.iam.security.AuthorizationCodeRegistry;
+import xyz.kaaniche.phoenix.iam.security.ExpiryService;
+import xyz.kaaniche.phoenix.iam.security.HashingPool;
+import xyz.kaaniche.phoenix.iam.security.TimingWheel;
 
 import java.io.InputStream;
 import java.net.URI;
@@ -31,6 +37,9 @@ public class AuthenticationEndpoint {
 
     @Inject private Logger logger;
     @Inject PhoenixIAMRepository phoenixIAMRepository;
+    @Inject private ScopeRegistry scopeRegistry;
+    @EJB private ExpiryService expiryService;
+    @EJB private AuthorizationCodeRegistry authorizationCodeRegistry;
 
     @Context private HttpServletRequest request;
 
@@ -50,6 +59,25 @@ public class AuthenticationEndpoint {
         int fails;
         long windowStart;
         long blockedUntil;
+
+        long expiresAt() {
+            return Math.max(windowStart + WINDOW_SECONDS, blockedUntil);
+        }
+    }
+
+    // Attempts are dropped by the expiry service once their window and block are both over;
+    // a timeout is scheduled each time either is pushed back.
+    private TimingWheel.Channel<String> expiryOf(ConcurrentHashMap<String, Attempt> map) {
+        return map == IP_ATTEMPTS
+                ? expiryService.channel("login.attempts.ip", keys -> expireAttempts(IP_ATTEMPTS, keys))
+                : expiryService.channel("login.attempts.user-ip", keys -> expireAttempts(USER_IP_ATTEMPTS, keys));
+    }
+
+    private static void expireAttempts(ConcurrentHashMap<String, Attempt> map, List<String> keys) {
+        long now = Instant.now().getEpochSecond();
+        for (String key : keys) {
+            map.computeIfPresent(key, (k, a) -> a.expiresAt() <= now ? null : a);
+        }
     }
 
     private boolean isBlocked(Attempt a, long nowEpochSec) {
@@ -61,6 +89,7 @@ public class AuthenticationEndpoint {
             if (existing == null) {
                 Attempt a = new Attempt();
                 a.windowStart = nowEpochSec;
+                expiryOf(map).schedule(k, a.expiresAt());
                 return a;
             }
             // reset window if old
@@ -68,6 +97,7 @@ public class AuthenticationEndpoint {
                 existing.windowStart = nowEpochSec;
                 existing.fails = 0;
                 existing.blockedUntil = 0;
+                expiryOf(map).schedule(k, existing.expiresAt());
             }
             return existing;
         });
@@ -80,12 +110,14 @@ public class AuthenticationEndpoint {
         u.fails++;
         if (u.fails >= MAX_FAILS_PER_USER_IP) {
             u.blockedUntil = nowEpochSec + BLOCK_SECONDS;
+            expiryOf(USER_IP_ATTEMPTS).schedule(userIpKey, u.blockedUntil);
         }
 
         Attempt i = getAttempt(IP_ATTEMPTS, ip, nowEpochSec);
         i.fails++;
         if (i.fails >= MAX_FAILS_PER_IP) {
             i.blockedUntil = nowEpochSec + BLOCK_SECONDS;
+            expiryOf(IP_ATTEMPTS).schedule(ip, i.blockedUntil);
         }
 
         // Optional progressive delay (slows brute-force even if not blocked yet)
@@ -151,7 +183,7 @@ public class AuthenticationEndpoint {
             return informUserAboutError("Invalid client_id");
         }
 
-        Tenant tenant = phoenixIAMRepository.findTenantByName(clientId);
+        TenantSnapshot tenant = phoenixIAMRepository.findTenantByName(clientId).orElse(null);
         if (tenant == null) {
             return informUserAboutError("Invalid client_id");
         }
@@ -237,7 +269,7 @@ public class AuthenticationEndpoint {
         SignInData signInData = signInDataOpt.get();
 
         // Re-validate tenant & redirectUri against server truth (mitigates cookie tampering)
-        Tenant tenant = phoenixIAMRepository.findTenantByName(signInData.tenant());
+        TenantSnapshot tenant = phoenixIAMRepository.findTenantByName(signInData.tenant()).orElse(null);
         if (tenant == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity("Invalid session state.").build();
         }
@@ -248,8 +280,22 @@ public class AuthenticationEndpoint {
         }
 
         // Prevent user enumeration: same behavior for invalid username/password
-        Identity identity = (username == null) ? null : phoenixIAMRepository.findIdentityByUsername(username);
-        boolean ok = identity != null && Argon2Utility.check(identity.getPassword(), password == null ? new char[0] : password.toCharArray());
+        // Credentials and roles in one round trip
+        Optional<LoginProjection> login = (username == null) ? Optional.empty() : phoenixIAMRepository.findLogin(username);
+        Argon2Utility.Verification verification;
+        try {
+            verification = login.isPresent()
+                    ? Argon2Utility.verify(login.get().passwordHash(), password == null ? new char[0] : password.toCharArray())
+                    : null;
+        } catch (HashingPool.SaturatedException e) {
+            // shed load rather than queue logins: not a failed attempt
+            logger.warning("Password hashing saturated, login of " + username + " rejected");
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", e.getRetryAfterSeconds())
+                    .entity("Too many concurrent sign-ins. Try again later.")
+                    .build();
+        }
+        boolean ok = verification != null && verification.valid();
 
         if (!ok) {
             registerFailure(ip, username, now);
@@ -266,17 +312,27 @@ public class AuthenticationEndpoint {
         // success
         clearFailures(ip, username);
         logger.info("Authenticated identity:" + username);
+        if (verification.rehash() != null) {
+            // the hash predates the current Argon2 policy
+            try {
+                phoenixIAMRepository.updatePassword(login.get().identityId(), verification.rehash());
+            } catch (RuntimeException e) {
+                logger.warning("Unable to store the rehashed password of identity:" + username);
+            }
+        }
 
         MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
-        Optional<Grant> grant = phoenixIAMRepository.findGrant(signInData.tenant(), identity.getId());
-
-        if (grant.isPresent()) {
+        // grants and scope intersection are served from memory, scopes the tenant never saw can't be approved
+        ScopeDictionary scopes = scopeRegistry.dictionary(tenant);
+        long[] allowedScopes = phoenixIAMRepository.findAllowedScopes(tenant, login.get().identityId(),
+                scopes.encode(signInData.requestedScope(), false));
+        if (allowedScopes != null) {
             String redirectURI = buildActualRedirectURI(
                     signInData.redirectUri(),
                     params.getFirst("response_type"),
                     signInData.tenant(),
                     username,
-                    checkUserScopes(grant.get().getApprovedScopes(), signInData.requestedScope()),
+                    scopes.decode(allowedScopes),
                     params.getFirst("code_challenge"),
                     params.getFirst("state")
             );
@@ -313,8 +369,14 @@ public class AuthenticationEndpoint {
             return Response.seeOther(location).build();
         }
 
-        List<String> approvedScopes = (scope == null) ? List.of() : Arrays.stream(scope.split(" ")).filter(s -> !s.isBlank()).toList();
-        if (approvedScopes.isEmpty()) {
+        TenantSnapshot tenant = phoenixIAMRepository.findTenantByName(signInData.tenant()).orElse(null);
+        if (tenant == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid session state.").build();
+        }
+        // only requested scopes the tenant knows of can be approved
+        ScopeDictionary scopes = scopeRegistry.dictionary(tenant);
+        long[] approvedScopes = ScopeDictionary.and(scopes.encode(scope, false), scopes.encode(signInData.requestedScope(), false));
+        if (ScopeDictionary.isEmpty(approvedScopes)) {
             URI location = UriBuilder.fromUri(signInData.redirectUri())
                     .queryParam("error", "access_denied")
                     .queryParam("error_description", "User didn't approve the request.")
@@ -328,7 +390,7 @@ public class AuthenticationEndpoint {
                     null,
                     signInData.tenant(),
                     username,
-                    String.join(" ", approvedScopes),
+                    scopes.decode(approvedScopes),
                     null,
                     null
             )).build()).build();
@@ -355,7 +417,9 @@ public class AuthenticationEndpoint {
                     redirectUri
             );
 
-            sb.append("?code=").append(URLEncoder.encode(authorizationCode.getCode(codeChallenge), StandardCharsets.UTF_8));
+            String code = authorizationCode.getCode(codeChallenge);
+            authorizationCodeRegistry.register(code, authorizationCode.expirationDate());
+            sb.append("?code=").append(URLEncoder.encode(code, StandardCharsets.UTF_8));
         } else {
             // Implicit response_type=token is not supported
             return null;
@@ -365,17 +429,6 @@ public class AuthenticationEndpoint {
         return sb.toString();
     }
 
-    private String checkUserScopes(String userScopes, String requestedScope) {
-        Set<String> allowedScopes = new LinkedHashSet<>();
-        Set<String> rScopes = new HashSet<>(Arrays.asList((requestedScope == null ? "" : requestedScope).split(" ")));
-        Set<String> uScopes = new HashSet<>(Arrays.asList((userScopes == null ? "" : userScopes).split(" ")));
-
-        for (String scope : uScopes) {
-            if (rScopes.contains(scope)) allowedScopes.add(scope);
-        }
-        return String.join(" ", allowedScopes);
-    }
-
     // Basic HTML escaping to prevent reflected XSS in error pages
     private static String escapeHtml(String s) {
         if (s == null) return "";
@@ -3,24 +3,68 @@ package xyz.kaaniche.phoenix.iam.boundaries;
 import jakarta.ejb.EJB;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import xyz.kaaniche.phoenix.iam.security.JwksDocument;
 import xyz.kaaniche.phoenix.iam.security.JwtManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Publishes the token verification keys: the whole JWK Set, or a single key with {@code ?kid=}.
+ * Bodies are serialized once per key ring, revalidated through their ETag and cached until the ring
+ * is expected to change.
+ */
 @Path("jwk")
 @ApplicationScoped
 public class JWKEndpoint {
+
+    // unknown kids are cached briefly: a new key only shows up with a rotation
+    private static final long UNKNOWN_KID_MAX_AGE_SECONDS = 60;
+    private static final byte[] UNKNOWN_KID = "{\"error\":\"unknown kid\"}".getBytes(StandardCharsets.UTF_8);
+
     @EJB
     private JwtManager jwtManager;
 
     @GET
-    public Response getPublicVerificationKey(@QueryParam ("kid") String kid) throws Exception {
-        try {
-            return Response.ok(jwtManager.getPublicValidationKey(kid).toJSONString()).type(MediaType.APPLICATION_JSON).build();
-        }catch (Throwable t){
-            return Response.status(Response.Status.BAD_REQUEST).entity(t.getMessage()).build();
+    public Response getPublicVerificationKeys(@QueryParam("kid") String kid,
+                                              @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        JwksDocument jwks = jwtManager.getJwks();
+        JwksDocument.Entry entry = kid == null ? jwks.keySet() : jwks.key(kid);
+        if (entry == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(UNKNOWN_KID)
+                    .type(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.CACHE_CONTROL, "public, max-age=" + UNKNOWN_KID_MAX_AGE_SECONDS)
+                    .build();
+        }
+
+        String cacheControl = "public, max-age=" + jwks.maxAge(Instant.now().getEpochSecond());
+        if (matches(ifNoneMatch, entry.etag())) {
+            return Response.notModified()
+                    .header(HttpHeaders.ETAG, entry.etag())
+                    .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                    .build();
+        }
+        return Response.ok(entry.body(), MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ETAG, entry.etag())
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .build();
+    }
+
+    // If-None-Match uses the weak comparison: W/ prefixes are ignored
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
         }
+        return false;
     }
 }
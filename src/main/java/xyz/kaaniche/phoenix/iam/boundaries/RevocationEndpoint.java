@@ -0,0 +1,49 @@
+package xyz.kaaniche.phoenix.iam.boundaries;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
+import jakarta.json.Json;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import xyz.kaaniche.phoenix.iam.security.RevocationList;
+import xyz.kaaniche.phoenix.iam.security.Secured;
+
+/**
+ * Administrative revocation of access tokens before they expire, either a single token by its jti
+ * or every token issued so far to a subject.
+ */
+@Path("/revocations")
+@Secured
+@RolesAllowed("root")
+public class RevocationEndpoint {
+
+    @EJB
+    private RevocationList revocationList;
+
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    public Response revoke(@FormParam("jti") String jti, @FormParam("subject") String subject) {
+        boolean hasJti = jti != null && !jti.isBlank();
+        boolean hasSubject = subject != null && !subject.isBlank();
+        if (hasJti == hasSubject) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Json.createObjectBuilder()
+                            .add("error", "invalid_request")
+                            .add("error_description", "exactly one of jti or subject is required")
+                            .build())
+                    .build();
+        }
+        if (hasJti) {
+            revocationList.revokeToken(jti);
+        } else {
+            revocationList.revokeSubject(subject);
+        }
+        return Response.noContent().build();
+    }
+}
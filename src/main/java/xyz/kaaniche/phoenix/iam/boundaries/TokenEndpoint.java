@@ -12,11 +12,16 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.controllers.LoginProjection;
 import xyz.kaaniche.phoenix.iam.controllers.PhoenixIAMRepository;
 import xyz.kaaniche.phoenix.iam.security.AuthorizationCode;
+import xyz.kaaniche.phoenix.iam.security.AuthorizationCodeRegistry;
 import xyz.kaaniche.phoenix.iam.security.JwtManager;
+import xyz.kaaniche.phoenix.iam.security.RefreshTokenStore;
+import xyz.kaaniche.phoenix.iam.security.RevocationList;
 
 import java.security.GeneralSecurityException;
+import java.util.Optional;
 import java.util.Set;
 
 @Path("/oauth/token")
@@ -30,6 +35,15 @@ public class TokenEndpoint {
     @EJB
     private JwtManager jwtManager;
 
+    @EJB
+    private RefreshTokenStore refreshTokenStore;
+
+    @EJB
+    private AuthorizationCodeRegistry authorizationCodeRegistry;
+
+    @EJB
+    private RevocationList revocationList;
+
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
@@ -78,18 +92,33 @@ public class TokenEndpoint {
                     return responseError("invalid_grant", "Malformed refresh token", Response.Status.UNAUTHORIZED);
                 }
 
-                // TODO (best practice): implement refresh token rotation + revocation store by jti
-                // Example:
-                // String jti = refreshClaims.getJWTID();
-                // if (isRevokedOrAlreadyUsed(jti)) return responseError(...)
-
+                // Rotation: a refresh token is exchanged once, replaying it revokes its whole family
+                String jti = refreshClaims.getJWTID();
+                if (jti == null || refreshClaims.getExpirationTime() == null) {
+                    return responseError("invalid_grant", "Malformed refresh token", Response.Status.UNAUTHORIZED);
+                }
+                // a revoked subject must not mint access tokens issued after its revocation
+                long issuedAt = refreshClaims.getIssueTime() == null ? 0 : refreshClaims.getIssueTime().toInstant().getEpochSecond();
+                if (revocationList.isRevoked(jti, subject, issuedAt)) {
+                    return responseError("invalid_grant", "Refresh token was revoked", Response.Status.UNAUTHORIZED);
+                }
+                String familyId = refreshClaims.getStringClaim(JwtManager.CLAIM_FAMILY_ID);
+                if (familyId == null) {
+                    // issued before families existed: the token starts its own family
+                    familyId = jti;
+                }
                 // Roles should ideally come from server-side source (DB), not from refresh token
-                String[] roles = phoenixIAMRepository.getRoles(subject);
+                Optional<LoginProjection> login = phoenixIAMRepository.findLogin(subject);
+                if (login.isEmpty()) {
+                    return responseError("invalid_grant", "Unknown identity", Response.Status.UNAUTHORIZED);
+                }
+                Long rolesMask = login.get().rolesMask();
+                String[] roles = PhoenixIAMRepository.toRoles(rolesMask);
 
-                String newAccessToken = jwtManager.generateAccessToken(tenantId, subject, scopes, roles);
-                String newRefreshToken = jwtManager.generateRefreshToken(tenantId, subject, scopes);
+                String newAccessToken = jwtManager.generateAccessToken(tenantId, subject, scopes, roles, rolesMask);
+                String newRefreshToken = jwtManager.generateRefreshToken(tenantId, subject, scopes, familyId);
 
-                return Response.ok(Json.createObjectBuilder()
+                Response issued = Response.ok(Json.createObjectBuilder()
                                 .add("token_type", "Bearer")
                                 .add("access_token", newAccessToken)
                                 .add("expires_in", ConfigProvider.getConfig().getValue("jwt.lifetime.duration", Integer.class))
@@ -100,6 +129,23 @@ public class TokenEndpoint {
                         .header("Pragma", "no-cache")
                         .build();
 
+                // consumed last: a failure while issuing leaves the token usable for the client's retry
+                RefreshTokenStore.Outcome outcome;
+                try {
+                    outcome = refreshTokenStore.consume(jti, familyId,
+                            refreshClaims.getExpirationTime().toInstant().getEpochSecond());
+                } catch (IllegalArgumentException e) {
+                    return responseError("invalid_grant", "Malformed refresh token", Response.Status.UNAUTHORIZED);
+                }
+                if (outcome == RefreshTokenStore.Outcome.UNAVAILABLE) {
+                    return responseError("temporarily_unavailable", "Can't refresh token", Response.Status.SERVICE_UNAVAILABLE);
+                }
+                if (outcome != RefreshTokenStore.Outcome.ROTATED) {
+                    return responseError("invalid_grant", "Refresh token was already used", Response.Status.UNAUTHORIZED);
+                }
+
+                return issued;
+
             } catch (Exception e) {
                 return responseError("server_error", "Can't refresh token", Response.Status.INTERNAL_SERVER_ERROR);
             }
@@ -122,6 +168,10 @@ public class TokenEndpoint {
                 if (decoded == null) {
                     return responseError("invalid_grant", "Invalid authorization code", Response.Status.UNAUTHORIZED);
                 }
+                // single use, within its lifetime
+                if (!authorizationCodeRegistry.redeem(code)) {
+                    return responseError("invalid_grant", "Authorization code expired or already used", Response.Status.UNAUTHORIZED);
+                }
 
                 String tenantName = decoded.tenantName();
                 String username = decoded.identityUsername();
@@ -133,9 +183,14 @@ public class TokenEndpoint {
                     return responseError("invalid_grant", "Malformed authorization code", Response.Status.UNAUTHORIZED);
                 }
 
-                String[] roles = phoenixIAMRepository.getRoles(username);
+                Optional<LoginProjection> login = phoenixIAMRepository.findLogin(username);
+                if (login.isEmpty()) {
+                    return responseError("invalid_grant", "Unknown identity", Response.Status.UNAUTHORIZED);
+                }
+                Long rolesMask = login.get().rolesMask();
+                String[] roles = PhoenixIAMRepository.toRoles(rolesMask);
 
-                String accessToken = jwtManager.generateAccessToken(tenantName, username, approvedScopes, roles);
+                String accessToken = jwtManager.generateAccessToken(tenantName, username, approvedScopes, roles, rolesMask);
                 String refreshTok = jwtManager.generateRefreshToken(tenantName, username, approvedScopes);
 
                 return Response.ok(Json.createObjectBuilder()
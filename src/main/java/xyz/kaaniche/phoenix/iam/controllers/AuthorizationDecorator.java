@@ -12,11 +12,12 @@ import xyz.kaaniche.phoenix.core.entities.RootEntity;
 import xyz.kaaniche.phoenix.iam.security.IdentityUtility;
 
 import java.io.Serializable;
-import java.util.EnumMap;
-import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Decorator
 @Priority(Interceptor.Priority.APPLICATION)
@@ -28,89 +29,121 @@ public abstract class AuthorizationDecorator<ID extends Serializable, E extends
     @Delegate
     private IGenericDAO<ID, E> delegate;
     
-    private final EnumMap<Role, Set<Permission>> roleToPermissions = new EnumMap<>(Role.class);
+    @Inject
+    private PermissionMatrix permissionMatrix;
 
     @Override
     public <S extends E> S save(S entity) {
-        authorize(SecureAction.SAVE, entity);
+        authorize(PermissionMatrix.Action.SAVE, entity.getId());
         return delegate.save(entity);
     }
 
+    @Override
+    public int saveAll(Iterable<? extends E> entities) {
+        long rolesMask = callerRolesMask();
+        for (E entity : entities) {
+            if (!permissionMatrix.isAllowed(delegate.getEntityClass(), PermissionMatrix.Action.SAVE, entity.getId(), rolesMask)) {
+                throw new NotAuthorizedException(PermissionMatrix.Action.SAVE);
+            }
+        }
+        return delegate.saveAll(entities);
+    }
+
     @Override
     public E edit(ID id, Consumer<E> updateFewAttributes) {
-        authorize(SecureAction.EDIT, delegate.findById(id).orElseThrow());
+        // the decision only needs the id: no need to load the entity twice
+        authorize(PermissionMatrix.Action.EDIT, id);
         return delegate.edit(id, updateFewAttributes);
     }
 
     @Override
     public void delete(E entity) {
-        authorize(SecureAction.DELETE, entity);
+        authorize(PermissionMatrix.Action.DELETE, entity.getId());
         delegate.delete(entity);
     }
 
-    private void authorize(SecureAction action, E entity) {
-        Set<Role> roles = IdentityUtility.getRoles().stream()
-            .map(Role::byId)
-            .collect(Collectors.toUnmodifiableSet());
-        Set<Permission> permissions = roles.stream()
-            .map(roleToPermissions::get)
-            .flatMap(Set::stream)
-            .collect(Collectors.toUnmodifiableSet());
-        ID id = entity.getId();
-        Class<E> type = delegate.getEntityClass();
-        if (!permissions.contains(new Permission(action, type, id))) {
+    @Override
+    public int updateWhere(Map<String, ?> where, Map<String, ?> set) {
+        authorizeBulk(PermissionMatrix.Action.EDIT);
+        return delegate.updateWhere(where, set);
+    }
+
+    @Override
+    public int deleteWhere(Map<String, ?> where) {
+        authorizeBulk(PermissionMatrix.Action.DELETE);
+        return delegate.deleteWhere(where);
+    }
+
+    private void authorizeBulk(PermissionMatrix.Action action) {
+        if (!permissionMatrix.isAllowedInBulk(delegate.getEntityClass(), action, callerRolesMask())) {
             throw new NotAuthorizedException(action);
         }
     }
 
-    private final class Permission extends java.security.Permission {
-        private Class<E> type;
-        private ID id;
+    // a read by id is decided like any other action on that id
+    @Override
+    public Optional<E> findById(ID id) {
+        authorize(PermissionMatrix.Action.READ, id);
+        return delegate.findById(id);
+    }
 
-        public Permission(String name) {
-            super(name);
-        }
+    @Override
+    public E find(ID id) {
+        authorize(PermissionMatrix.Action.READ, id);
+        return delegate.find(id);
+    }
 
-        public Permission(SecureAction action, Class<E> type, ID id) {
-            super(action.name());
-            this.type = type;
-            this.id = id;
-        }
+    // bulk reads need the type-wide read permission, entities are then filtered by their per-id entries
+    @Override
+    public List<E> findAll() {
+        long rolesMask = authorizeRead();
+        return delegate.findAll().stream().filter(e -> isReadable(e, rolesMask)).toList();
+    }
 
-        @Override
-        public boolean implies(java.security.Permission permission) {
-            if (permission instanceof AuthorizationDecorator.Permission) {
-                AuthorizationDecorator<?, ?>.Permission that = (AuthorizationDecorator.Permission) permission;
-                return this.getName().equals(that.getName()) 
-                    && this.type.equals(that.type) 
-                    && this.id.equals(that.id);
-            }
-            return false;
-        }
+    @Override
+    public Stream<E> streamAll() {
+        long rolesMask = authorizeRead();
+        return delegate.streamAll().filter(e -> isReadable(e, rolesMask));
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (obj instanceof java.security.Permission p) {
-                return this.implies(p) && p.implies(this);
-            }
-            return false;
-        }
+    @Override
+    public Stream<E> streamAll(int fetchSize) {
+        long rolesMask = authorizeRead();
+        return delegate.streamAll(fetchSize).filter(e -> isReadable(e, rolesMask));
+    }
 
-        @Override
-        public int hashCode() {
-            return 31 * Objects.hash(type, id) + getName().hashCode();
+    @Override
+    public List<E> findPage(ID after, int limit) {
+        long rolesMask = authorizeRead();
+        return delegate.findPage(after, limit).stream().filter(e -> isReadable(e, rolesMask)).toList();
+    }
+
+    private long authorizeRead() {
+        // the caller's identity is thread-bound: resolve it before the stream is handed over
+        long rolesMask = callerRolesMask();
+        if (!permissionMatrix.isAllowed(delegate.getEntityClass(), PermissionMatrix.Action.READ, null, rolesMask)) {
+            throw new NotAuthorizedException(PermissionMatrix.Action.READ);
         }
+        return rolesMask;
+    }
 
-        @Override
-        public String getActions() {
-            return null;
+    private boolean isReadable(E entity, long rolesMask) {
+        return permissionMatrix.isAllowed(delegate.getEntityClass(), PermissionMatrix.Action.READ, entity.getId(), rolesMask);
+    }
+
+    private void authorize(PermissionMatrix.Action action, ID id) {
+        if (!permissionMatrix.isAllowed(delegate.getEntityClass(), action, id, callerRolesMask())) {
+            throw new NotAuthorizedException(action);
         }
     }
 
-    private enum SecureAction {
-        SAVE, EDIT, DELETE
+    private static long callerRolesMask() {
+        Long rolesMask = IdentityUtility.getRolesMask();
+        if (rolesMask != null) {
+            return rolesMask;
+        }
+        // tokens without the compact roles claim
+        Set<String> roles = IdentityUtility.getRoles();
+        return roles == null ? Role.GUEST.getValue() : Role.maskOf(roles);
     }
 }
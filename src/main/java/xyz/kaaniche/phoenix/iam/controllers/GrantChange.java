@@ -0,0 +1,9 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * A grant written through JPA, applied to the {@link GrantIndex} once the transaction commits.
+ *
+ * @param approvedScopes null when the grant was removed
+ */
+public record GrantChange(Short tenantId, Long identityId, String approvedScopes) {
+}
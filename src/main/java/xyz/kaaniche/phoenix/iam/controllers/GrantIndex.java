@@ -0,0 +1,153 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.core.controllers.BulkWrite;
+import xyz.kaaniche.phoenix.iam.entities.Grant;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The issued grants, by tenant and identity, with their approved scopes held as bitsets against the tenant's
+ * {@link ScopeDictionary} from the {@link ScopeRegistry}. Loaded from the {@code issued_grants} table at startup,
+ * kept current by the writes going through JPA once they commit, see {@link GrantIndexListener}, and reloaded
+ * every {@code grant.index.ttl} seconds: a grant written or revoked by another node is honored here at most
+ * that long.
+ */
+@Singleton
+@LocalBean
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GrantIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(GrantIndex.class.getName());
+
+    private record Key(short tenantId, long identityId) {
+    }
+
+    // marks a grant removed while a reload is running, so that the row read before the removal is skipped
+    private static final long[] REMOVED = new long[0];
+
+    private final long ttl = ConfigProvider.getConfig().getOptionalValue("grant.index.ttl", Long.class).orElse(300L);
+
+    private volatile ConcurrentHashMap<Key, long[]> grants = new ConcurrentHashMap<>();
+    // the index being reloaded, also receiving the changes committed meanwhile
+    private volatile ConcurrentHashMap<Key, long[]> loading;
+    private volatile long loadedAt;
+
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private ScopeRegistry scopeRegistry;
+
+    public GrantIndex() {
+    }
+
+    GrantIndex(ScopeRegistry scopeRegistry) {
+        this.scopeRegistry = scopeRegistry;
+    }
+
+    @PostConstruct
+    public void warm() {
+        reload();
+    }
+
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void expire() {
+        if (Instant.now().getEpochSecond() - loadedAt >= ttl) {
+            reload();
+        }
+    }
+
+    /**
+     * Set-based writes to grants, or to the identities and tenants they cascade from, reload the index.
+     */
+    public void onBulkWrite(@Observes(during = TransactionPhase.AFTER_SUCCESS) BulkWrite write) {
+        if (write.entityClass() == Grant.class || write.entityClass() == Identity.class || write.entityClass() == Tenant.class) {
+            reload();
+        }
+    }
+
+    public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) GrantChange change) {
+        Key key = new Key(change.tenantId(), change.identityId());
+        // stored grants register their scopes
+        long[] approved = change.approvedScopes() == null ? REMOVED
+                : scopeRegistry.dictionary(change.tenantId()).encode(change.approvedScopes(), true);
+        // the reloaded index first: once it is published, loading is null
+        ConcurrentHashMap<Key, long[]> pending = loading;
+        if (pending != null) {
+            pending.put(key, approved);
+        }
+        if (approved == REMOVED) {
+            grants.remove(key);
+        } else {
+            grants.put(key, approved);
+        }
+    }
+
+    public void put(Short tenantId, Long identityId, String approvedScopes) {
+        onChange(new GrantChange(tenantId, identityId, approvedScopes));
+    }
+
+    public void remove(Short tenantId, Long identityId) {
+        onChange(new GrantChange(tenantId, identityId, null));
+    }
+
+    /**
+     * Loads the index aside and swaps it in, lookups keep using the previous one meanwhile.
+     */
+    private synchronized void reload() {
+        long now = Instant.now().getEpochSecond();
+        ConcurrentHashMap<Key, long[]> fresh = new ConcurrentHashMap<>();
+        loading = fresh;
+        try (Stream<Object[]> rows = entityManager.createQuery(
+                        "select g.id.tenantId, g.id.identityId, g.approvedScopes from Grant g", Object[].class)
+                .setHint("org.hibernate.readOnly", true)
+                .setHint("org.hibernate.fetchSize", 1000)
+                .getResultStream()) {
+            // changes committed since the query started are newer than its rows
+            rows.forEach(row -> fresh.putIfAbsent(new Key((Short) row[0], (Long) row[1]),
+                    scopeRegistry.dictionary((Short) row[0]).encode((String) row[2], true)));
+            grants = fresh;
+            loadedAt = now;
+        } finally {
+            loading = null;
+        }
+        fresh.values().removeIf(approved -> approved == REMOVED);
+        LOGGER.info("Indexed " + fresh.size() + " grants");
+    }
+
+    public boolean contains(Short tenantId, Long identityId) {
+        long[] approved = grants.get(new Key(tenantId, identityId));
+        return approved != null && approved != REMOVED;
+    }
+
+    /**
+     * @param requested the requested scopes, encoded against the tenant dictionary
+     * @return the requested scopes approved by the grant of the identity, null without grant
+     */
+    public long[] allowedScopes(Short tenantId, Long identityId, long[] requested) {
+        long[] approved = grants.get(new Key(tenantId, identityId));
+        return approved == null || approved == REMOVED ? null : ScopeDictionary.and(approved, requested);
+    }
+
+    public int size() {
+        return grants.size();
+    }
+}
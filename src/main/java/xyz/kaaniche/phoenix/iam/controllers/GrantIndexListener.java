@@ -0,0 +1,28 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import xyz.kaaniche.phoenix.iam.entities.Grant;
+
+/**
+ * Reports the grants written through JPA to the {@link GrantIndex}, which applies them after commit.
+ */
+public class GrantIndexListener {
+
+    @Inject
+    private Event<GrantChange> changes;
+
+    @PostPersist
+    @PostUpdate
+    public void put(Grant grant) {
+        changes.fire(new GrantChange(grant.getId().getTenantId(), grant.getId().getIdentityId(), grant.getApprovedScopes()));
+    }
+
+    @PostRemove
+    public void remove(Grant grant) {
+        changes.fire(new GrantChange(grant.getId().getTenantId(), grant.getId().getIdentityId(), null));
+    }
+}
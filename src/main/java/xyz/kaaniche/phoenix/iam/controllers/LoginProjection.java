@@ -0,0 +1,12 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * What authenticating an identity needs, fetched in a single query without loading the entity. Grants are
+ * served by the {@link GrantIndex}.
+ *
+ * @param identityId   the identity id
+ * @param passwordHash the Argon2 encoded password
+ * @param rolesMask    the {@link Role} bitmask of the identity
+ */
+public record LoginProjection(Long identityId, String passwordHash, Long rolesMask) {
+}
@@ -0,0 +1,8 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * A username or tenant name created, or renamed to, through JPA, dropped from the {@link NegativeCache} once the
+ * transaction commits.
+ */
+public record NameTaken(NegativeCache.Kind kind, String name) {
+}
@@ -0,0 +1,112 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.core.controllers.BulkWrite;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Names known not to exist, so that repeated lookups of unknown usernames or tenants don't reach the database.
+ * Entries live {@code negative.cache.ttl} seconds; at most {@code negative.cache.capacity} of them are kept, past
+ * that misses go to the database until expired entries are purged. Creating an identity or a tenant drops its
+ * name once the transaction commits, see {@link NegativeCacheListener}; a miss read by a lookup overlapping that
+ * commit isn't recorded.
+ */
+@Singleton
+public class NegativeCache {
+
+    public enum Kind {
+        USERNAME, TENANT
+    }
+
+    private record Key(Kind kind, String name) {
+    }
+
+    private final long ttl = ConfigProvider.getConfig().getOptionalValue("negative.cache.ttl", Long.class).orElse(30L);
+    private final int capacity = ConfigProvider.getConfig().getOptionalValue("negative.cache.capacity", Integer.class).orElse(100_000);
+
+    private final ConcurrentHashMap<Key, Long> expirations = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public boolean isMissing(Kind kind, String name) {
+        return isMissing(kind, name, Instant.now().getEpochSecond());
+    }
+
+    boolean isMissing(Kind kind, String name, long now) {
+        Key key = new Key(kind, name);
+        Long expiresAt = expirations.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt > now) {
+            return true;
+        }
+        expirations.remove(key, expiresAt);
+        return false;
+    }
+
+    /**
+     * @return the stamp to pass to {@link #recordMiss} for a lookup about to run
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * @param stamp taken before the lookup that missed
+     */
+    public void recordMiss(Kind kind, String name, long stamp) {
+        recordMiss(kind, name, stamp, Instant.now().getEpochSecond());
+    }
+
+    void recordMiss(Kind kind, String name, long stamp, long now) {
+        if (invalidations.get() != stamp) {
+            return;
+        }
+        if (expirations.size() >= capacity) {
+            expirations.values().removeIf(expiresAt -> expiresAt <= now);
+            if (expirations.size() >= capacity) {
+                return;
+            }
+        }
+        Key key = new Key(kind, name);
+        Long expiresAt = now + ttl;
+        expirations.put(key, expiresAt);
+        // an invalidation that slipped in between may have missed the entry
+        if (invalidations.get() != stamp) {
+            expirations.remove(key, expiresAt);
+        }
+    }
+
+    public void invalidate(Kind kind, String name) {
+        invalidations.incrementAndGet();
+        expirations.remove(new Key(kind, name));
+    }
+
+    public void onNameTaken(@Observes(during = TransactionPhase.AFTER_SUCCESS) NameTaken name) {
+        invalidate(name.kind(), name.name());
+    }
+
+    /**
+     * Set-based updates may have renamed identities or tenants.
+     */
+    public void onBulkWrite(@Observes(during = TransactionPhase.AFTER_SUCCESS) BulkWrite write) {
+        Kind kind = write.entityClass() == Identity.class ? Kind.USERNAME
+                : write.entityClass() == Tenant.class ? Kind.TENANT : null;
+        if (kind != null) {
+            invalidations.incrementAndGet();
+            expirations.keySet().removeIf(key -> key.kind() == kind);
+        }
+    }
+
+    public int size() {
+        return expirations.size();
+    }
+}
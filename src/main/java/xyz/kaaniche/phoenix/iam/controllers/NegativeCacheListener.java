@@ -0,0 +1,28 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+/**
+ * Reports the names of identities and tenants created, or renamed, through JPA to the {@link NegativeCache}, which
+ * drops them after commit.
+ */
+public class NegativeCacheListener {
+
+    @Inject
+    private Event<NameTaken> names;
+
+    @PostPersist
+    @PostUpdate
+    public void exists(Object entity) {
+        if (entity instanceof Identity identity) {
+            names.fire(new NameTaken(NegativeCache.Kind.USERNAME, identity.getUsername()));
+        } else if (entity instanceof Tenant tenant) {
+            names.fire(new NameTaken(NegativeCache.Kind.TENANT, tenant.getName()));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which roles may perform which action on which entity type, loaded from the configuration at startup:
+ * <pre>
+ * authorization.&lt;Entity&gt;.&lt;action&gt;=Role1,Role2
+ * authorization.&lt;Entity&gt;.&lt;action&gt;.&lt;id&gt;=Role3
+ * </pre>
+ * where {@code <Entity>} is the entity simple class name, {@code <action>} one of save, edit, delete or read,
+ * and the optional {@code <id>} restricts the entry to one entity, overriding the type-wide entry.
+ * Unlisted actions are reserved to root. A check is a couple of mask tests.
+ */
+@Singleton
+@LocalBean
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PermissionMatrix {
+
+    public enum Action {
+        SAVE, EDIT, DELETE, READ
+    }
+
+    private static final String PREFIX = "authorization.";
+
+    // byId: per-id ACL entries, keyed by the id's string form
+    private record Cell(RoleSet roles, Map<String, RoleSet> byId) {
+    }
+
+    // rows indexed by Action ordinal, resolved once per entity class
+    private volatile ClassValue<Cell[]> byType = table(Map.of());
+
+    @PostConstruct
+    public void load() {
+        load(ConfigProvider.getConfig());
+    }
+
+    /**
+     * @throws IllegalArgumentException for a malformed entry
+     */
+    void load(Config config) {
+        Map<String, EnumMap<Action, RoleSet>> typeWide = new HashMap<>();
+        Map<String, EnumMap<Action, Map<String, RoleSet>>> perId = new HashMap<>();
+        for (String name : config.getPropertyNames()) {
+            if (!name.startsWith(PREFIX)) continue;
+            String[] key = name.substring(PREFIX.length()).split("\\.", 3);
+            if (key.length < 2) {
+                throw new IllegalArgumentException("Illegal authorization entry " + name);
+            }
+            Action action = Action.valueOf(key[1].toUpperCase(Locale.ROOT));
+            RoleSet roles = RoleSet.of(Arrays.asList(config.getValue(name, String[].class)));
+            if (key.length == 2) {
+                typeWide.computeIfAbsent(key[0], t -> new EnumMap<>(Action.class)).put(action, roles);
+            } else {
+                perId.computeIfAbsent(key[0], t -> new EnumMap<>(Action.class))
+                        .computeIfAbsent(action, a -> new HashMap<>())
+                        .put(key[2], roles);
+            }
+        }
+
+        Map<String, Cell[]> loaded = new HashMap<>();
+        for (String type : union(typeWide.keySet(), perId.keySet())) {
+            Cell[] row = new Cell[Action.values().length];
+            for (Action action : Action.values()) {
+                row[action.ordinal()] = new Cell(
+                        typeWide.getOrDefault(type, new EnumMap<>(Action.class)).getOrDefault(action, RoleSet.ROOT_ONLY),
+                        Map.copyOf(perId.getOrDefault(type, new EnumMap<>(Action.class)).getOrDefault(action, Map.of())));
+            }
+            loaded.put(type, row);
+        }
+        byType = table(Map.copyOf(loaded));
+    }
+
+    /**
+     * @param id        the entity id, null when not assigned yet
+     * @param rolesMask the caller's role bitmask
+     */
+    public boolean isAllowed(Class<?> type, Action action, Object id, long rolesMask) {
+        Cell[] row = byType.get(type);
+        if (row == null) {
+            return RoleSet.ROOT_ONLY.admits(rolesMask);
+        }
+        Cell cell = row[action.ordinal()];
+        if (id != null && !cell.byId().isEmpty()) {
+            RoleSet acl = cell.byId().get(id.toString());
+            if (acl != null) return acl.admits(rolesMask);
+        }
+        return cell.roles().admits(rolesMask);
+    }
+
+    /**
+     * Whether the caller may act on any number of entities at once, set-based: the type-wide entry must admit
+     * the caller, and per-id entries, which can't be checked row by row, reserve it to root.
+     */
+    public boolean isAllowedInBulk(Class<?> type, Action action, long rolesMask) {
+        Cell[] row = byType.get(type);
+        if (row == null) {
+            return RoleSet.ROOT_ONLY.admits(rolesMask);
+        }
+        Cell cell = row[action.ordinal()];
+        return cell.roles().admits(rolesMask) && (cell.byId().isEmpty() || RoleSet.ROOT_ONLY.admits(rolesMask));
+    }
+
+    private static ClassValue<Cell[]> table(Map<String, Cell[]> rows) {
+        return new ClassValue<>() {
+            @Override
+            protected Cell[] computeValue(Class<?> type) {
+                return rows.get(type.getSimpleName());
+            }
+        };
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+}
@@ -3,56 +3,134 @@ package xyz.kaaniche.phoenix.iam.controllers;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
 import jakarta.persistence.TypedQuery;
-import xyz.kaaniche.phoenix.iam.entities.Grant;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.iam.entities.Identity;
 import xyz.kaaniche.phoenix.iam.entities.Tenant;
 
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 
 @Singleton
 public class PhoenixIAMRepository {
+    private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+
     @Inject
     private EntityManager entityManager;
 
-    public Tenant findTenantByName(String name){
-        return entityManager.createQuery("select t from Tenant t where name =:name",Tenant.class)
-                .setParameter("name",name)
-                .getSingleResult();
+    @Inject
+    private TenantCache tenantCache;
+
+    @Inject
+    private GrantIndex grantIndex;
+
+    @Inject
+    private NegativeCache negativeCache;
+
+    private final long collapseMaxWait = ConfigProvider.getConfig().getOptionalValue("query.collapse.max.wait", Long.class).orElse(1000L);
+
+    // concurrent identical queries share one round trip, their results are detached
+    private final SingleFlight<String, TenantSnapshot> tenantQueries = new SingleFlight<>(collapseMaxWait);
+    private final SingleFlight<String, Optional<LoginProjection>> loginQueries = new SingleFlight<>(collapseMaxWait);
+    private final SingleFlight<String, Long> rolesQueries = new SingleFlight<>(collapseMaxWait);
+
+    /**
+     * @return a snapshot of the tenant, served from the {@link TenantCache} once loaded, unknown names are
+     * remembered by the {@link NegativeCache}
+     */
+    public Optional<TenantSnapshot> findTenantByName(String name){
+        if(name==null||negativeCache.isMissing(NegativeCache.Kind.TENANT,name)){
+            return Optional.empty();
+        }
+        long stamp = negativeCache.stamp();
+        TenantSnapshot tenant = tenantCache.byName(name, n -> tenantQueries.load(n, k -> entityManager.createQuery("select t from Tenant t where name =:name",Tenant.class)
+                .setParameter("name",k)
+                .getResultStream()
+                .findFirst()
+                .map(TenantSnapshot::new)
+                .orElse(null)));
+        if(tenant==null){
+            negativeCache.recordMiss(NegativeCache.Kind.TENANT,name,stamp);
+        }
+        return Optional.ofNullable(tenant);
     }
 
-    public Identity findIdentityByUsername(String username){
-        return entityManager.createQuery("select i from Identity i where username=:username",Identity.class)
-                .setParameter("username",username)
-                .getSingleResult();
+    /**
+     * The requested scopes approved by the identity for the tenant, from the {@link GrantIndex}.
+     *
+     * @param requestedScopes encoded against the tenant {@link ScopeDictionary}
+     * @return null when the identity didn't grant the tenant anything yet
+     */
+    public long[] findAllowedScopes(TenantSnapshot tenant,Long identityId,long[] requestedScopes){
+        return grantIndex.allowedScopes(tenant.getId(),identityId,requestedScopes);
     }
 
-    public Optional<Grant> findGrant(String tenantName,Long identityId){
-        Tenant tenant = findTenantByName(tenantName);
-        if(tenant==null){
-            throw new IllegalArgumentException("Invalid Client Id!");
+    /**
+     * Stores a new password hash, written through the managed entity so that its listeners run. Commits on its
+     * own: a failure surfaces here, and never rolls back the sign-in that triggered the rehash.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void updatePassword(Long identityId,String passwordHash){
+        Identity identity = entityManager.find(Identity.class,identityId);
+        if(identity!=null){
+            identity.setPassword(passwordHash);
         }
-        return Optional.of(entityManager.createQuery("select g from Grant g where g.id.tenantId =:tenantId and g.id.identityId = :identityId",Grant.class)
-                .setParameter("tenantId",tenant.getId())
-                .setParameter("identityId",identityId)
-                .getSingleResult());
     }
-    public String[] getRoles(String username){
-        TypedQuery<Long> query = entityManager.createQuery("select i.roles from Identity i where username=:username",Long.class);
-        query.setParameter("username",username);
-        Long roles = query.getSingleResult();
-        Set<String> ret = new HashSet<>();
-        for(Role role:Role.values()){
-            if((roles&role.getValue())!=0L){
-                String value = Role.byValue(role.getValue());
-                if (value==null){
-                    continue;
-                }
-                ret.add(value);
-            }
+
+    /**
+     * Credentials and roles of an identity, in one read-only query.
+     *
+     * @return empty for an unknown username, remembered by the {@link NegativeCache}
+     */
+    public Optional<LoginProjection> findLogin(String username){
+        if(username==null||negativeCache.isMissing(NegativeCache.Kind.USERNAME,username)){
+            return Optional.empty();
+        }
+        long stamp = negativeCache.stamp();
+        Optional<LoginProjection> login = loginQueries.load(username, k -> entityManager.createQuery("select new xyz.kaaniche.phoenix.iam.controllers.LoginProjection(" +
+                        "i.id, i.password, i.roles) from Identity i where i.username = :username",LoginProjection.class)
+                .setParameter("username",k)
+                .setFlushMode(FlushModeType.COMMIT)
+                .setHint(HINT_READ_ONLY,true)
+                .getResultStream()
+                .findFirst());
+        if(login.isEmpty()){
+            negativeCache.recordMiss(NegativeCache.Kind.USERNAME,username,stamp);
         }
-        return ret.toArray(new String[0]);
+        return login;
+    }
+
+    public String[] getRoles(String username){
+        return toRoles(getRolesMask(username));
+    }
+
+    public Long getRolesMask(String username){
+        return rolesQueries.load(username, k -> {
+            TypedQuery<Long> query = entityManager.createQuery("select i.roles from Identity i where username=:username",Long.class);
+            query.setParameter("username",k);
+            return query.getSingleResult();
+        });
+    }
+
+    /**
+     * @return how many tenant, login and roles queries ran
+     */
+    public long getQueries(){
+        return tenantQueries.getLoads()+loginQueries.getLoads()+rolesQueries.getLoads();
+    }
+
+    /**
+     * @return how many tenant, login and roles lookups were served by a query already in flight
+     */
+    public long getCollapsedQueries(){
+        return tenantQueries.getCollapsed()+loginQueries.getCollapsed()+rolesQueries.getCollapsed();
+    }
+
+    /**
+     * @return the role ids granted by the mask, shared between callers: it must not be modified
+     */
+    public static String[] toRoles(Long roles){
+        return Role.namesOf(roles == null ? Role.GUEST.getValue() : roles);
     }
 }
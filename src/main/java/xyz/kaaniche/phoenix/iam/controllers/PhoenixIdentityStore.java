@@ -2,22 +2,25 @@ package xyz.kaaniche.phoenix.iam.controllers;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
-import jakarta.persistence.EntityManager;
 import jakarta.security.enterprise.credential.Credential;
 import jakarta.security.enterprise.credential.UsernamePasswordCredential;
 import jakarta.security.enterprise.identitystore.CredentialValidationResult;
 import jakarta.security.enterprise.identitystore.IdentityStore;
 import jakarta.transaction.Transactional;
-import xyz.kaaniche.phoenix.iam.entities.Identity;
 import xyz.kaaniche.phoenix.iam.security.Argon2Utility;
+import xyz.kaaniche.phoenix.iam.security.HashingPool;
 
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @Singleton
 @Transactional
 public class PhoenixIdentityStore implements IdentityStore {
+    private static final Logger LOGGER = Logger.getLogger(PhoenixIdentityStore.class.getName());
+
     @Inject
-    private EntityManager entityManager;
+    private PhoenixIAMRepository phoenixIAMRepository;
 
     @Override
     public CredentialValidationResult validate(Credential credential){
@@ -28,32 +31,37 @@ public class PhoenixIdentityStore implements IdentityStore {
     }
     private CredentialValidationResult validate(UsernamePasswordCredential upc){
         try {
-            Identity identity = entityManager.
-                    createQuery("select i from Identity i where i.username = :username",Identity.class).
-                    setParameter("username",upc.getCaller()).getSingleResult();
-            Objects.requireNonNull(identity,"Identity should be not null");
-            if(Argon2Utility.check(identity.getPassword(),upc.getPassword().getValue())){
-                return new CredentialValidationResult(upc.getCaller(),toCallerGroups(identity.getRoles()));
+            Optional<LoginProjection> login = phoenixIAMRepository.findLogin(upc.getCaller());
+            if(login.isPresent()){
+                Argon2Utility.Verification verification = Argon2Utility.verify(login.get().passwordHash(),upc.getPassword().getValue());
+                if(verification.valid()){
+                    rehash(login.get(),verification);
+                    return new CredentialValidationResult(upc.getCaller(),toCallerGroups(login.get().rolesMask()));
+                }
             }
             return CredentialValidationResult.INVALID_RESULT;
+        }catch (HashingPool.SaturatedException e){
+            // the credential couldn't be checked, it isn't known to be wrong
+            return CredentialValidationResult.NOT_VALIDATED_RESULT;
         }catch (Throwable e){
             return CredentialValidationResult.INVALID_RESULT;
         }
     }
 
-    private Set<String> toCallerGroups(Long roles){
-        if(roles == 0L) return Collections.singleton(Role.GUEST.id());
-        if(roles == Long.MAX_VALUE) return Collections.singleton(Role.ROOT.id());
-        if (roles<0L){
-            throw new IllegalArgumentException("Permission level cannot be negative");
+    private void rehash(LoginProjection login,Argon2Utility.Verification verification){
+        if(verification.rehash()==null){
+            return;
         }
-        Set<String> ret = new HashSet<>();
-        for(long value = 1L; value<=62L; ++value){
-            if((value&roles) !=0){
-                ret.add(Role.byValue(value));
-            }
+        try {
+            phoenixIAMRepository.updatePassword(login.identityId(),verification.rehash());
+        }catch (RuntimeException e){
+            // the old hash still verifies: retried on the next sign-in
+            LOGGER.log(Level.WARNING,"Unable to store the rehashed password of identity "+login.identityId(),e);
         }
-        return ret;
+    }
+
+    private Set<String> toCallerGroups(Long roles){
+        return Role.setOf(roles);
     }
 
     @Override
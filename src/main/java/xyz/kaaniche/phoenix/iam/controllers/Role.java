@@ -3,9 +3,12 @@ package xyz.kaaniche.phoenix.iam.controllers;
 import org.eclipse.microprofile.config.ConfigProvider;
 
 import java.security.Permission;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
@@ -39,6 +42,15 @@ public enum Role {
 
     private static final Map<Long,String> ids = new LinkedHashMap<>();
     private static final Map<String,Role> byIds = new LinkedHashMap<>();
+    // custom role name by bit index, null for unused bits
+    private static final String[] bitNames = new String[63];
+
+    // masks resolved to names: identities cluster into a few role combinations
+    private static final int NAMES_CACHE_SIZE = 1024;
+    private static final Map<Long,Names> namesByMask = new ConcurrentHashMap<>();
+
+    private record Names(String[] array, Set<String> set) {
+    }
 
     static {
         final AtomicLong id = new AtomicLong(1L);
@@ -55,12 +67,95 @@ public enum Role {
         byIds.put(GUEST.name().toLowerCase(),GUEST);
         byIds.put(ROOT.name().toLowerCase(),ROOT);
         byIds.putAll(customRoles.stream().collect(Collectors.toMap(Function.identity(),x -> values[ordinal.getAndIncrement()])));
+        ids.forEach((value, name) -> {
+            if (value != GUEST.value && value != ROOT.value) {
+                bitNames[Long.numberOfTrailingZeros(value)] = name;
+            }
+        });
     }
 
     public final String id(){
         return ids.get(value);
     }
 
+    /**
+     * Whether an identity holding the given role bitmask plays this role:
+     * GUEST only for an empty mask, ROOT only for the full mask, any other role when its bit is set.
+     */
+    public final boolean isGrantedBy(long mask){
+        return switch (this){
+            case GUEST -> mask == 0L;
+            case ROOT -> mask == ROOT.value;
+            default -> (mask & value) != 0L;
+        };
+    }
+
+    /**
+     * @return whether the role with the given id is granted by the mask, false for unknown ids
+     */
+    public static boolean isGranted(String id, long mask){
+        Role role = byIds.get(id);
+        return role != null && role.isGrantedBy(mask);
+    }
+
+    /**
+     * @return the bitmask of the roles with the given ids, unknown ids being ignored
+     */
+    public static long maskOf(Iterable<String> ids){
+        long mask = GUEST.value;
+        for (String id : ids) {
+            Role role = byIds.get(id);
+            if (role != null) {
+                mask |= role.value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * The ids of the roles granted by a mask, see {@link #isGrantedBy(long)}: "guest" for the empty mask,
+     * "root" and every custom role for the full mask, otherwise the custom roles whose bit is set.
+     * Only the set bits are visited, and the result is shared between callers: it must not be modified.
+     */
+    public static String[] namesOf(long mask){
+        return names(mask).array();
+    }
+
+    /**
+     * @return the immutable set of {@link #namesOf(long)}
+     */
+    public static Set<String> setOf(long mask){
+        return names(mask).set();
+    }
+
+    private static Names names(long mask){
+        Names names = namesByMask.get(mask);
+        if (names != null) {
+            return names;
+        }
+        if (mask < 0L) {
+            throw new IllegalArgumentException("Permission level cannot be negative");
+        }
+        List<String> resolved = new ArrayList<>(Long.bitCount(mask) + 1);
+        if (mask == GUEST.value) {
+            resolved.add(GUEST.id());
+        } else if (mask == ROOT.value) {
+            resolved.add(ROOT.id());
+        }
+        for (long bits = mask; bits != 0L; bits &= bits - 1) {
+            String name = bitNames[Long.numberOfTrailingZeros(bits)];
+            if (name != null) {
+                resolved.add(name);
+            }
+        }
+        names = new Names(resolved.toArray(new String[0]), Set.copyOf(resolved));
+        if (namesByMask.size() < NAMES_CACHE_SIZE) {
+            Names cached = namesByMask.putIfAbsent(mask, names);
+            return cached != null ? cached : names;
+        }
+        return names;
+    }
+
     public static String byValue(Long value){
         return ids.get(value);
     }
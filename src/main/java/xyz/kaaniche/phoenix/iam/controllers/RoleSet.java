@@ -0,0 +1,42 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * A set of {@link Role}s folded into a bitmask, tested against a caller's role mask in constant time.
+ * GUEST and ROOT are exact masks rather than bits, so they are kept as flags.
+ */
+public record RoleSet(long mask, boolean guest, boolean root) {
+
+    public static final RoleSet NONE = new RoleSet(0L, false, false);
+    public static final RoleSet ROOT_ONLY = new RoleSet(0L, false, true);
+
+    /**
+     * @throws IllegalArgumentException for an id that is not a role
+     */
+    public static RoleSet of(Iterable<String> ids) {
+        long mask = 0L;
+        boolean guest = false;
+        boolean root = false;
+        for (String id : ids) {
+            Role role = Role.byId(id.trim());
+            if (role == null) {
+                throw new IllegalArgumentException("Unknown role " + id);
+            }
+            switch (role) {
+                case GUEST -> guest = true;
+                case ROOT -> root = true;
+                default -> mask |= role.getValue();
+            }
+        }
+        return new RoleSet(mask, guest, root);
+    }
+
+    /**
+     * @param rolesMask the caller's role bitmask
+     * @return whether the caller plays at least one of the roles
+     */
+    public boolean admits(long rolesMask) {
+        return (rolesMask & mask) != 0L
+                || (guest && rolesMask == Role.GUEST.getValue())
+                || (root && rolesMask == Role.ROOT.getValue());
+    }
+}
@@ -0,0 +1,125 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import xyz.kaaniche.phoenix.iam.security.Scopes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Numbers the scope names of one tenant so that a set of scopes is a bitset: bit {@code i} of word {@code i >> 6}
+ * stands for the scope numbered {@code i}. Numbers are assigned on first sight and never reused, up to a capacity
+ * past which unknown names are left out.
+ */
+public final class ScopeDictionary {
+
+    private static final long[] EMPTY = new long[0];
+
+    private record Names(String[] byId, int[] canonicalOrder) {
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Names names = new Names(new String[0], new int[0]);
+
+    public ScopeDictionary(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of the scope, assigning the next one to an unknown scope, -1 when the dictionary is full
+     */
+    public int idOf(String scope) {
+        Integer id = ids.get(scope);
+        return id != null ? id : assign(scope);
+    }
+
+    private synchronized int assign(String scope) {
+        Integer id = ids.get(scope);
+        if (id != null) {
+            return id;
+        }
+        String[] byId = names.byId();
+        if (byId.length >= capacity) {
+            return -1;
+        }
+        byId = Arrays.copyOf(byId, byId.length + 1);
+        byId[byId.length - 1] = scope;
+        String[] sorted = byId;
+        int[] order = IntStream.range(0, byId.length).boxed()
+                .sorted(Comparator.comparing(i -> sorted[i]))
+                .mapToInt(Integer::intValue).toArray();
+        names = new Names(byId, order);
+        ids.put(scope, byId.length - 1);
+        return byId.length - 1;
+    }
+
+    /**
+     * @return the number of the scope, -1 when it was never seen
+     */
+    public int find(String scope) {
+        Integer id = ids.get(scope);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param scopes whitespace separated scope names, may be null
+     * @param assign whether unknown names get numbered, otherwise they are left out
+     */
+    public long[] encode(String scopes, boolean assign) {
+        if (scopes == null) {
+            return EMPTY;
+        }
+        long[] bits = EMPTY;
+        int length = scopes.length();
+        for (int start = Scopes.tokenStart(scopes, 0); start < length; ) {
+            int end = Scopes.tokenEnd(scopes, start);
+            String scope = scopes.substring(start, end);
+            int id = assign ? idOf(scope) : find(scope);
+            if (id >= 0) {
+                if (id >> 6 >= bits.length) {
+                    bits = Arrays.copyOf(bits, (id >> 6) + 1);
+                }
+                bits[id >> 6] |= 1L << id;
+            }
+            start = Scopes.tokenStart(scopes, end);
+        }
+        return bits;
+    }
+
+    /**
+     * @return the names of the set bits in {@link Scopes#canonical(String) canonical} form
+     */
+    public String decode(long[] bits) {
+        Names names = this.names;
+        StringBuilder sb = new StringBuilder();
+        for (int id : names.canonicalOrder()) {
+            if (id >> 6 < bits.length && (bits[id >> 6] & 1L << id) != 0) {
+                if (!sb.isEmpty()) sb.append(' ');
+                sb.append(names.byId()[id]);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the bits set in both, trailing empty words dropped
+     */
+    public static long[] and(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        while (n > 0 && (a[n - 1] & b[n - 1]) == 0) n--;
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = a[i] & b[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link ScopeDictionary} per tenant, holding at most {@code scope.dictionary.capacity} scope names. Only
+ * the scopes the tenant requires and those of stored grants are assigned an id; names sent by clients are
+ * looked up without assigning, so they can't fill the dictionary and crowd the registered ones out.
+ */
+@Singleton
+public class ScopeRegistry {
+
+    private final int capacity = ConfigProvider.getConfig().getOptionalValue("scope.dictionary.capacity", Integer.class).orElse(256);
+
+    private final ConcurrentHashMap<Short, ScopeDictionary> dictionaries = new ConcurrentHashMap<>();
+    // the snapshot whose required scopes were last registered, per tenant
+    private final ConcurrentHashMap<Short, TenantSnapshot> registered = new ConcurrentHashMap<>();
+
+    public ScopeDictionary dictionary(Short tenantId) {
+        return dictionaries.computeIfAbsent(tenantId, t -> new ScopeDictionary(capacity));
+    }
+
+    /**
+     * The dictionary of the tenant, holding its required scopes.
+     */
+    public ScopeDictionary dictionary(TenantSnapshot tenant) {
+        ScopeDictionary dictionary = dictionary(tenant.getId());
+        // the tenant cache serves the same snapshot until the tenant changes
+        if (registered.put(tenant.getId(), tenant) != tenant) {
+            dictionary.encode(tenant.getRequiredScopes(), true);
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,84 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader, callers arriving while it runs
+ * wait for it and share its result, or its exception. Nothing is kept once the load completes, caching is left
+ * to the caller. Loaded values are shared between threads: they must be immutable and detached from any
+ * persistence context.
+ * <p>
+ * A caller waits at most {@code maxWaitMillis} for the load in flight, then runs the loader itself: a slow
+ * load never holds more than its own caller.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final long maxWaitMillis;
+
+    public SingleFlight(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            collapsed.increment();
+            try {
+                return leader.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                // the flight is late: load without it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            collapsed.decrement();
+            timeouts.increment();
+            loads.increment();
+            return loader.apply(key);
+        }
+        loads.increment();
+        try {
+            V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return how many loads actually ran
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * @return how many callers shared a load run by another caller
+     */
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    /**
+     * @return how many callers gave up waiting for the load in flight and ran their own
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,109 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.core.controllers.BulkWrite;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of {@link TenantSnapshot}s by name and by id. Entries live {@code tenant.cache.ttl} seconds
+ * and are dropped once an update or removal of the tenant through JPA commits, see {@link TenantCacheListener}. A
+ * load overlapping an invalidation isn't cached: it may have read the row as it was before the commit.
+ */
+@Singleton
+public class TenantCache {
+
+    private record Entry(TenantSnapshot tenant, long expiresAt) {
+    }
+
+    private final long ttl = ConfigProvider.getConfig().getOptionalValue("tenant.cache.ttl", Long.class).orElse(300L);
+
+    private final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Short, Entry> byId = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param loader queries the tenant on a miss
+     */
+    public TenantSnapshot byName(String name, Function<String, TenantSnapshot> loader) {
+        long now = Instant.now().getEpochSecond();
+        Entry entry = byName.get(name);
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.tenant();
+        }
+        long stamp = invalidations.get();
+        return put(loader.apply(name), now, stamp);
+    }
+
+    /**
+     * @param loader queries the tenant on a miss
+     */
+    public TenantSnapshot byId(Short id, Function<Short, TenantSnapshot> loader) {
+        long now = Instant.now().getEpochSecond();
+        Entry entry = byId.get(id);
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.tenant();
+        }
+        long stamp = invalidations.get();
+        return put(loader.apply(id), now, stamp);
+    }
+
+    /**
+     * @param stamp invalidation count when the load started
+     */
+    private TenantSnapshot put(TenantSnapshot tenant, long now, long stamp) {
+        if (tenant == null || invalidations.get() != stamp) {
+            return tenant;
+        }
+        Entry entry = new Entry(tenant, now + ttl);
+        byName.put(entry.tenant().getName(), entry);
+        byId.put(entry.tenant().getId(), entry);
+        // an invalidation that slipped in between may have missed the entry
+        if (invalidations.get() != stamp) {
+            byName.remove(entry.tenant().getName(), entry);
+            byId.remove(entry.tenant().getId(), entry);
+        }
+        return entry.tenant();
+    }
+
+    /**
+     * Drops the tenant under its id and under any name it was cached with, the name may have changed.
+     */
+    public void invalidate(Tenant tenant) {
+        invalidate(tenant.getId(), tenant.getName());
+    }
+
+    public void invalidate(Short id, String name) {
+        invalidations.incrementAndGet();
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+            byName.remove(entry.tenant().getName());
+        }
+        if (name != null) {
+            byName.remove(name);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        byName.clear();
+        byId.clear();
+    }
+
+    public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) TenantChange change) {
+        invalidate(change.id(), change.name());
+    }
+
+    public void onBulkWrite(@Observes(during = TransactionPhase.AFTER_SUCCESS) BulkWrite write) {
+        if (write.entityClass() == Tenant.class) {
+            invalidateAll();
+        }
+    }
+}
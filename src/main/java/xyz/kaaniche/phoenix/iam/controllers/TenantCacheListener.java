@@ -0,0 +1,22 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+/**
+ * Reports the tenants written through JPA to the {@link TenantCache}, which drops them after commit.
+ */
+public class TenantCacheListener {
+
+    @Inject
+    private Event<TenantChange> changes;
+
+    @PostUpdate
+    @PostRemove
+    public void invalidate(Tenant tenant) {
+        changes.fire(new TenantChange(tenant.getId(), tenant.getName()));
+    }
+}
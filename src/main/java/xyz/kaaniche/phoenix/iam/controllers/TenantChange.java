@@ -0,0 +1,7 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * A tenant updated or removed through JPA, dropped from the {@link TenantCache} once the transaction commits.
+ */
+public record TenantChange(Short id, String name) {
+}
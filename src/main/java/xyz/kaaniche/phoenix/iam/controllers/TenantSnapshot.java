@@ -0,0 +1,49 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+/**
+ * Immutable copy of a {@link Tenant}, detached from any persistence context, as served by the {@link TenantCache}.
+ * The tenant secret is not copied.
+ */
+public final class TenantSnapshot {
+    private final Short id;
+    private final String name;
+    private final String redirectUri;
+    private final Long allowedRoles;
+    private final String requiredScopes;
+    private final String supportedGrantTypes;
+
+    TenantSnapshot(Tenant tenant) {
+        this.id = tenant.getId();
+        this.name = tenant.getName();
+        this.redirectUri = tenant.getRedirectUri();
+        this.allowedRoles = tenant.getAllowedRoles();
+        this.requiredScopes = tenant.getRequiredScopes();
+        this.supportedGrantTypes = tenant.getSupportedGrantTypes();
+    }
+
+    public Short getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRedirectUri() {
+        return redirectUri;
+    }
+
+    public Long getAllowedRoles() {
+        return allowedRoles;
+    }
+
+    public String getRequiredScopes() {
+        return requiredScopes;
+    }
+
+    public String getSupportedGrantTypes() {
+        return supportedGrantTypes;
+    }
+}
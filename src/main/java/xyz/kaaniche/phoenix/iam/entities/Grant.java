@@ -2,11 +2,13 @@ package xyz.kaaniche.phoenix.iam.entities;
 
 import jakarta.persistence.*;
 import xyz.kaaniche.phoenix.core.entities.CompoundPKEntity;
+import xyz.kaaniche.phoenix.iam.controllers.GrantIndexListener;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "issued_grants")
+@EntityListeners(GrantIndexListener.class)
 public class Grant extends CompoundPKEntity<GrantPK> {
     @MapsId("tenantId")
     @ManyToOne
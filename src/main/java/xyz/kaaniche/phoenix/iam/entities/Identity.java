@@ -2,13 +2,16 @@ package xyz.kaaniche.phoenix.iam.entities;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Table;
 import xyz.kaaniche.phoenix.core.entities.SimplePKEntity;
+import xyz.kaaniche.phoenix.iam.controllers.NegativeCacheListener;
 
 import java.security.Principal;
 
 @Entity
 @Table(name = "identities")
+@EntityListeners(NegativeCacheListener.class)
 public class Identity extends SimplePKEntity<Long> implements Principal {
     @Column(length = 191,unique = true,nullable = false)
     private String username;
@@ -0,0 +1,80 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.annotation.security.DenyAll;
+import jakarta.annotation.security.PermitAll;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ws.rs.core.SecurityContext;
+import xyz.kaaniche.phoenix.iam.controllers.Role;
+import xyz.kaaniche.phoenix.iam.controllers.RoleSet;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The authorization a resource method requires, resolved once from its annotations and its class':
+ * deny all, permit all, or any of a {@link RoleSet}.
+ * Roles that are not {@code Role}s fall back to {@link SecurityContext#isUserInRole(String)}.
+ */
+final class AccessRule {
+
+    static final AccessRule PERMIT = new AccessRule(true, RoleSet.NONE, new String[0], new String[0]);
+    static final AccessRule DENY = new AccessRule(false, RoleSet.NONE, new String[0], new String[0]);
+
+    private final boolean permitAll;
+    private final RoleSet roles;
+    private final String[] roleNames;
+    private final String[] otherNames;
+
+    private AccessRule(boolean permitAll, RoleSet roles, String[] roleNames, String[] otherNames) {
+        this.permitAll = permitAll;
+        this.roles = roles;
+        this.roleNames = roleNames;
+        this.otherNames = otherNames;
+    }
+
+    /**
+     * Method annotations win over class annotations; without any, access is permitted.
+     */
+    static AccessRule of(Method method, Class<?> resourceClass) {
+        if (method.isAnnotationPresent(DenyAll.class)) return DENY;
+        RolesAllowed rolesAllowed = method.getAnnotation(RolesAllowed.class);
+        if (rolesAllowed != null) return rolesAllowed(rolesAllowed.value());
+        if (method.isAnnotationPresent(PermitAll.class)) return PERMIT;
+
+        rolesAllowed = resourceClass.getAnnotation(RolesAllowed.class);
+        if (rolesAllowed != null) return rolesAllowed(rolesAllowed.value());
+        if (resourceClass.isAnnotationPresent(DenyAll.class)) return DENY;
+        return PERMIT;
+    }
+
+    private static AccessRule rolesAllowed(String[] names) {
+        List<String> roleNames = new ArrayList<>();
+        List<String> otherNames = new ArrayList<>();
+        for (String name : names) {
+            String id = name.trim();
+            (Role.byId(id) != null ? roleNames : otherNames).add(id);
+        }
+        return new AccessRule(false, RoleSet.of(roleNames), roleNames.toArray(String[]::new),
+                otherNames.toArray(String[]::new));
+    }
+
+    boolean permits(SecurityContext sc) {
+        if (permitAll) return true;
+        if (this == DENY || sc == null || sc.getUserPrincipal() == null) return false;
+
+        if (sc instanceof TokenSecurityContext token && token.rolesMask() != null) {
+            if (roles.admits(token.rolesMask())) {
+                return true;
+            }
+        } else {
+            for (String role : roleNames) {
+                if (sc.isUserInRole(role)) return true;
+            }
+        }
+        for (String role : otherNames) {
+            if (sc.isUserInRole(role)) return true;
+        }
+        return false;
+    }
+}
@@ -2,6 +2,7 @@ package xyz.kaaniche.phoenix.iam.security;
 
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Helper;
 import jakarta.security.enterprise.identitystore.PasswordHash;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
@@ -20,6 +21,13 @@ public class Argon2Utility implements PasswordHash {
     private static final int MEMORY = config.getOptionalValue("argon2.memory", Integer.class).orElse(12288);
     private static final int THREADS = config.getOptionalValue("argon2.threads", Integer.class).orElse(1);
 
+    // Bounds concurrent hashes by cores and by native memory, argon2.pool.memory.budget is in KiB like argon2.memory
+    private static final HashingPool POOL = HashingPool.sized(
+            config.getOptionalValue("argon2.pool.memory.budget", Long.class).orElse(524288L),
+            MEMORY,
+            config.getOptionalValue("argon2.pool.queue", Integer.class).orElse(64),
+            config.getOptionalValue("argon2.pool.max.wait", Long.class).orElse(2000L));
+
     // Using a factory to ensure the Argon2 instance is correctly initialized
     private static final Argon2 argon2 = Argon2Factory.create(
             Argon2Factory.Argon2Types.ARGON2id, 
@@ -27,30 +35,141 @@ public class Argon2Utility implements PasswordHash {
             HASH_LENGTH
     );
 
+    /**
+     * @throws HashingPool.SaturatedException when the hashing pool can't take the password in time
+     */
     public static String hash(char[] password) {
         if (password == null || password.length == 0) {
             throw new IllegalArgumentException("Password cannot be empty.");
         }
         try {
             // Argon2.hash generates its own unique salt per password automatically
-            return argon2.hash(ITERATIONS, MEMORY, THREADS, password);
+            return POOL.call(() -> argon2.hash(ITERATIONS, MEMORY, THREADS, password));
         } finally {
             argon2.wipeArray(password);
         }
     }
 
+    /**
+     * @throws HashingPool.SaturatedException when the hashing pool can't take the password in time
+     */
     public static boolean check(String hashedPassword, char[] password) {
         if (hashedPassword == null || password == null) {
             return false;
         }
         try {
             // verify() is constant-time to prevent timing attacks
-            return argon2.verify(hashedPassword, password);
+            return POOL.call(() -> argon2.verify(hashedPassword, password));
+        } finally {
+            argon2.wipeArray(password);
+        }
+    }
+
+    /**
+     * Outcome of {@link #verify(String, char[])}.
+     *
+     * @param valid  whether the password matches
+     * @param rehash the password hashed with the current policy, when valid but hashed with other parameters
+     */
+    public record Verification(boolean valid, String rehash) {
+        static final Verification INVALID = new Verification(false, null);
+    }
+
+    /**
+     * Checks the password and, when its hash doesn't follow the current policy, hashes it again while the
+     * plain password is at hand, so that the caller can store the new hash.
+     *
+     * @throws HashingPool.SaturatedException when the hashing pool can't take the password in time
+     */
+    public static Verification verify(String hashedPassword, char[] password) {
+        if (hashedPassword == null || password == null) {
+            return Verification.INVALID;
+        }
+        try {
+            return POOL.call(() -> {
+                if (!argon2.verify(hashedPassword, password)) {
+                    return Verification.INVALID;
+                }
+                return new Verification(true, needsRehash(hashedPassword) && password.length > 0
+                        ? argon2.hash(ITERATIONS, MEMORY, THREADS, password) : null);
+            });
         } finally {
             argon2.wipeArray(password);
         }
     }
 
+    /**
+     * @return whether the encoded hash uses other parameters than the configured ones: type, iterations,
+     * memory, parallelism, salt or hash length
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        // $argon2id$v=19$m=<memory>,t=<iterations>,p=<parallelism>$<salt>$<hash>, base64 without padding
+        if (!hashedPassword.startsWith("$argon2id$") || argon2.needsRehash(hashedPassword, ITERATIONS, MEMORY, THREADS)) {
+            return true;
+        }
+        int hashStart = hashedPassword.lastIndexOf('$');
+        int saltStart = hashedPassword.lastIndexOf('$', hashStart - 1);
+        return decodedLength(hashStart - saltStart - 1) != SALT_LENGTH
+                || decodedLength(hashedPassword.length() - hashStart - 1) != HASH_LENGTH;
+    }
+
+    private static int decodedLength(int base64Length) {
+        return base64Length * 3 / 4;
+    }
+
+    /**
+     * Suggested cost for a target verification latency on this host.
+     *
+     * @param measuredMillis the latency of one verification with these parameters
+     */
+    public record Calibration(int iterations, int memory, int threads, long measuredMillis) {
+    }
+
+    /**
+     * Finds the highest iteration count whose hashing stays within {@code targetMillis} for the given memory,
+     * halving the memory while even one iteration is too slow.
+     *
+     * @param memory in KiB
+     */
+    public static Calibration calibrate(long targetMillis, int memory, int threads) {
+        int iterations = Argon2Helper.findIterations(argon2, targetMillis, memory, threads);
+        while (memory > 8 * threads && measure(1, memory, threads) > targetMillis) {
+            memory /= 2;
+            iterations = Argon2Helper.findIterations(argon2, targetMillis, memory, threads);
+        }
+        return new Calibration(iterations, memory, threads, measure(iterations, memory, threads));
+    }
+
+    private static long measure(int iterations, int memory, int threads) {
+        char[] sample = "calibration-sample-password".toCharArray();
+        String hash = argon2.hash(iterations, memory, threads, sample);
+        long start = System.nanoTime();
+        argon2.verify(hash, sample);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Calibration mode: {@code java Argon2Utility [targetMillis [memoryKiB [threads]]]} prints the suggested
+     * {@code argon2.*} configuration for this host, defaults are 500ms and the configured memory and threads.
+     */
+    public static void main(String[] args) {
+        long target = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int memory = args.length > 1 ? Integer.parseInt(args[1]) : MEMORY;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : THREADS;
+        Calibration calibration = calibrate(target, memory, threads);
+        System.out.println("# verification takes " + calibration.measuredMillis() + "ms, target " + target + "ms");
+        System.out.println("argon2.iterations=" + calibration.iterations());
+        System.out.println("argon2.memory=" + calibration.memory());
+        System.out.println("argon2.threads=" + calibration.threads());
+    }
+
+    /**
+     * @return the pool hashes run on, for its queue and wait metrics
+     */
+    public static HashingPool getPool() {
+        return POOL;
+    }
+
     @Override
     public String generate(char[] password) {
         return hash(password);
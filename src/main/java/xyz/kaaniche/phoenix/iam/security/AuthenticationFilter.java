@@ -1,17 +1,13 @@
 package xyz.kaaniche.phoenix.iam.security;
 
-import com.nimbusds.jwt.JWT;
-import com.nimbusds.jwt.JWTClaimsSet;
 import jakarta.annotation.Priority;
 import jakarta.ejb.EJBException;
-import jakarta.inject.Inject;
 import jakarta.security.enterprise.CallerPrincipal;
 import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.Provider;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
@@ -19,13 +15,8 @@ import org.eclipse.microprofile.config.ConfigProvider;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import java.security.Principal;
-import java.text.ParseException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashSet;
+import java.time.Instant;
 import java.util.Optional;
-import java.util.Set;
 
 @Secured
 @Provider
@@ -34,7 +25,6 @@ public class AuthenticationFilter implements ContainerRequestFilter {
 
     private static final Config config = ConfigProvider.getConfig();
     private static final String REALM = config.getValue("mp.jwt.realm", String.class);
-    private static final String CLAIM_ROLES = config.getValue("jwt.claim.roles", String.class);
     private static final String AUTHENTICATION_SCHEME = "Bearer";
 
     @Override
@@ -59,47 +49,42 @@ public class AuthenticationFilter implements ContainerRequestFilter {
             // Lookup JwtManager via JNDI
             InitialContext context = new InitialContext();
             JwtManager manager = (JwtManager) context.lookup("java:module/JwtManager");
+            RevocationList revocations = (RevocationList) context.lookup("java:module/RevocationList");
 
-            Optional<JWT> jwt = manager.validateJWT(token);
-            if (jwt.isPresent()) {
-                JWTClaimsSet claims = jwt.get().getJWTClaimsSet();
+            // Signature is only verified on a verified-token cache miss
+            Optional<VerifiedToken> verified = manager.authenticateAccessToken(token);
+            if (verified.isPresent()) {
+                VerifiedToken principal = verified.get();
 
                 // ✅ Token expiration check
-                if (claims.getExpirationTime() != null && claims.getExpirationTime().before(new Date())) {
+                if (principal.expiresAt() < Instant.now().getEpochSecond()) {
                     abortWithUnauthorized(requestContext);
                     return;
                 }
 
-                // Null-safe role handling
-                final String[] rolesArray = claims.getStringArrayClaim(CLAIM_ROLES);
-                final Set<String> roles = rolesArray != null ? new HashSet<>(Arrays.asList(rolesArray)) : Collections.emptySet();
+                // Revocation is checked on every request, cached or not
+                if (revocations.isRevoked(principal.jti(), principal.subject(), principal.issuedAt())) {
+                    abortWithUnauthorized(requestContext);
+                    return;
+                }
 
-                final Principal userPrincipal = new CallerPrincipal(claims.getSubject());
+                final Principal userPrincipal = new CallerPrincipal(principal.subject());
                 final boolean isSecure = requestContext.getSecurityContext().isSecure();
 
                 // Identity utility (be aware of thread safety)
-                IdentityUtility.iAm(claims.getSubject());
+                IdentityUtility.iAm(principal.subject());
+                IdentityUtility.setRoles(principal.roles());
+                IdentityUtility.setRolesMask(principal.rolesMask());
 
                 // Set the SecurityContext for the request
-                requestContext.setSecurityContext(new SecurityContext() {
-                    @Override
-                    public Principal getUserPrincipal() { return userPrincipal; }
-
-                    @Override
-                    public boolean isUserInRole(String role) { return roles.contains(role); }
-
-                    @Override
-                    public boolean isSecure() { return isSecure; }
-
-                    @Override
-                    public String getAuthenticationScheme() { return AUTHENTICATION_SCHEME; }
-                });
+                requestContext.setSecurityContext(new TokenSecurityContext(
+                        userPrincipal, principal.roles(), principal.rolesMask(), isSecure, AUTHENTICATION_SCHEME));
 
             } else {
                 abortWithUnauthorized(requestContext);
             }
 
-        } catch (EJBException | ParseException | NamingException e) {
+        } catch (EJBException | NamingException e) {
             abortWithUnauthorized(requestContext);
         }
     }
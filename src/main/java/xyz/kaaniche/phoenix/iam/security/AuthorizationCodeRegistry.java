@@ -0,0 +1,54 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Singleton;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorization codes issued and not redeemed yet. A code can be redeemed once, before its expiration;
+ * codes never redeemed are dropped by the {@link ExpiryService} when they expire.
+ * <p>
+ * The registry is local to the node that issued the code, and a code unknown here is rejected: single use
+ * fails closed rather than open. With several nodes, the token request of an authorization code flow must
+ * reach the node that served the authorization request, through session affinity on the client, for the
+ * two minutes a code lives.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AuthorizationCodeRegistry {
+
+    @EJB
+    private ExpiryService expiryService;
+
+    private final ConcurrentHashMap<String, TimingWheel.Timeout> pending = new ConcurrentHashMap<>();
+    private TimingWheel.Channel<String> expiry;
+
+    @PostConstruct
+    public void start() {
+        expiry = expiryService.channel("authorization.codes", codes -> codes.forEach(pending::remove));
+    }
+
+    /**
+     * @param expiresAt code expiration (epoch seconds)
+     */
+    public void register(String code, long expiresAt) {
+        pending.put(code, expiry.schedule(code, expiresAt));
+    }
+
+    /**
+     * @return true when the code was issued, not redeemed yet and not expired
+     */
+    public boolean redeem(String code) {
+        TimingWheel.Timeout timeout = pending.remove(code);
+        if (timeout == null) return false;
+        expiry.cancel(timeout);
+        return timeout.deadline() >= Instant.now().getEpochSecond();
+    }
+}
@@ -1,9 +1,6 @@
 package xyz.kaaniche.phoenix.iam.security;
 
 import jakarta.annotation.Priority;
-import jakarta.annotation.security.DenyAll;
-import jakarta.annotation.security.PermitAll;
-import jakarta.annotation.security.RolesAllowed;
 import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.ContainerRequestContext;
@@ -15,11 +12,30 @@ import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.Provider;
 
 import java.lang.reflect.Method;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Enforces {@code @DenyAll}, {@code @PermitAll} and {@code @RolesAllowed}. The annotations of a resource method
+ * are resolved into an {@link AccessRule} on its first request; later requests cost a lookup and a mask test.
+ */
 @Provider
 @Priority(Priorities.AUTHORIZATION)
 public class AuthorizationFilter implements ContainerRequestFilter {
 
+    private static final Logger LOGGER = Logger.getLogger(AuthorizationFilter.class.getName());
+
+    // per resource class: an inherited method may be governed by different class annotations
+    private static final ClassValue<ConcurrentHashMap<Method, AccessRule>> RULES = new ClassValue<>() {
+        @Override
+        protected ConcurrentHashMap<Method, AccessRule> computeValue(Class<?> resourceClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final LongAdder DENIALS = new LongAdder();
+
     @Context
     private ResourceInfo resourceInfo;
 
@@ -27,66 +43,33 @@ public class AuthorizationFilter implements ContainerRequestFilter {
     public void filter(ContainerRequestContext requestContext) {
         Method method = resourceInfo.getResourceMethod();
         Class<?> resourceClass = resourceInfo.getResourceClass();
-
-        SecurityContext sc = requestContext.getSecurityContext();
-
-        // DenyAll on method
-        if (method.isAnnotationPresent(DenyAll.class)) {
-            refuseRequest(sc);
-        }
-
-        // RolesAllowed on method
-        RolesAllowed rolesAllowed = method.getAnnotation(RolesAllowed.class);
-        if (rolesAllowed != null) {
-            performAuthorization(rolesAllowed.value(), sc);
-            return;
-        }
-
-        // PermitAll on method
-        if (method.isAnnotationPresent(PermitAll.class)) {
-            return;
-        }
-
-        // RolesAllowed on class
-        rolesAllowed = resourceClass.getAnnotation(RolesAllowed.class);
-        if (rolesAllowed != null) {
-            performAuthorization(rolesAllowed.value(), sc);
-            return;
+        ConcurrentHashMap<Method, AccessRule> rules = RULES.get(resourceClass);
+        AccessRule rule = rules.get(method);
+        if (rule == null) {
+            rule = rules.computeIfAbsent(method, m -> AccessRule.of(m, resourceClass));
         }
 
-        // DenyAll on class
-        if (resourceClass.isAnnotationPresent(DenyAll.class)) {
-            refuseRequest(sc);
-        }
-
-        // PermitAll on class
-        if (resourceClass.isAnnotationPresent(PermitAll.class)) {
-            return;
-        }
-
-        // No annotation → allow by default
-    }
-
-    private void performAuthorization(String[] rolesAllowed, SecurityContext sc) {
-        if (sc == null || sc.getUserPrincipal() == null) {
+        SecurityContext sc = requestContext.getSecurityContext();
+        if (!rule.permits(sc)) {
             refuseRequest(sc);
         }
-
-        for (String role : rolesAllowed) {
-            if (sc.isUserInRole(role.trim())) {
-                return;
-            }
-        }
-
-        refuseRequest(sc);
     }
 
     private void refuseRequest(SecurityContext sc) {
-        // Optional logging
-        System.out.println("Authorization failed for user: " +
-                (sc != null && sc.getUserPrincipal() != null ? sc.getUserPrincipal().getName() : "anonymous"));
+        DENIALS.increment();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Authorization failed for user: " +
+                    (sc != null && sc.getUserPrincipal() != null ? sc.getUserPrincipal().getName() : "anonymous"));
+        }
 
         // Return 403 Forbidden instead of 401
         throw new WebApplicationException("Access denied", Response.Status.FORBIDDEN);
     }
+
+    /**
+     * @return the number of requests refused since startup
+     */
+    public static long getDenials() {
+        return DENIALS.sum();
+    }
 }
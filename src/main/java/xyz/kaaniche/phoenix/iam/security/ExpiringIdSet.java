@@ -0,0 +1,151 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.util.Arrays;
+
+/**
+ * A set of 128-bit ids (UUID halves) laid out in primitive arrays and partitioned into time buckets by
+ * expiration: an id is stored in the bucket covering its expiration time, and a whole bucket is released
+ * at once when its window has passed, so expiry never looks at individual entries.
+ * <p>
+ * Each bucket is an open-addressing table of {@code long} pairs (no per-entry objects). The total number
+ * of slots across buckets is capped, so memory stays within a fixed budget. Not thread-safe.
+ */
+final class ExpiringIdSet {
+
+    enum Insertion { ADDED, PRESENT, FULL }
+
+    private static final int INITIAL_SLOTS = 64;
+
+    private final long bucketSeconds;
+    private final long maxSlots;
+    // for each bucket: the window it holds (exp / bucketSeconds), -1 when released
+    private final long[] windows;
+    // for each bucket: slot i holds the id (table[2i], table[2i+1]); (0, 0) marks a free slot
+    private final long[][] tables;
+    private final int[] sizes;
+    private long allocatedSlots;
+    private long size;
+
+    /**
+     * @param bucketSeconds width of a bucket window
+     * @param horizon       farthest an expiration may lie ahead of the oldest live one (seconds)
+     * @param maxEntries    memory budget, in entries
+     */
+    ExpiringIdSet(long bucketSeconds, long horizon, long maxEntries) {
+        this.bucketSeconds = bucketSeconds;
+        // tables are kept at most half full
+        this.maxSlots = Math.max(INITIAL_SLOTS, 2 * maxEntries);
+        int buckets = (int) (horizon / bucketSeconds) + 2;
+        this.windows = new long[buckets];
+        this.tables = new long[buckets][];
+        this.sizes = new int[buckets];
+        Arrays.fill(windows, -1L);
+    }
+
+    boolean contains(long hi, long lo, long exp) {
+        long window = exp / bucketSeconds;
+        int bucket = bucket(window);
+        return windows[bucket] == window && indexOf(tables[bucket], hi, lo) >= 0;
+    }
+
+    /**
+     * Looks the id up in every live bucket, for callers that do not know its expiration.
+     */
+    boolean containsAny(long hi, long lo) {
+        if (size == 0) return false;
+        for (int bucket = 0; bucket < tables.length; bucket++) {
+            if (sizes[bucket] > 0 && indexOf(tables[bucket], hi, lo) >= 0) return true;
+        }
+        return false;
+    }
+
+    Insertion add(long hi, long lo, long exp) {
+        if (hi == 0L && lo == 0L) throw new IllegalArgumentException("Reserved id");
+        long window = exp / bucketSeconds;
+        int bucket = bucket(window);
+        if (windows[bucket] != window) {
+            release(bucket);
+            windows[bucket] = window;
+        }
+        long[] table = tables[bucket];
+        if (table != null && indexOf(table, hi, lo) >= 0) return Insertion.PRESENT;
+
+        int slots = table == null ? 0 : table.length / 2;
+        if (2 * (sizes[bucket] + 1) > slots) {
+            int grown = slots == 0 ? INITIAL_SLOTS : 2 * slots;
+            if (allocatedSlots + grown - slots > maxSlots) return Insertion.FULL;
+            table = resize(table, grown);
+            allocatedSlots += grown - slots;
+            tables[bucket] = table;
+        }
+        insert(table, hi, lo);
+        sizes[bucket]++;
+        size++;
+        return Insertion.ADDED;
+    }
+
+    /**
+     * Releases every bucket whose whole window lies before {@code now}.
+     */
+    void expire(long now) {
+        for (int bucket = 0; bucket < windows.length; bucket++) {
+            if (windows[bucket] >= 0 && (windows[bucket] + 1) * bucketSeconds <= now) {
+                release(bucket);
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    private int bucket(long window) {
+        return (int) (window % windows.length);
+    }
+
+    private void release(int bucket) {
+        if (tables[bucket] != null) {
+            allocatedSlots -= tables[bucket].length / 2;
+            size -= sizes[bucket];
+        }
+        tables[bucket] = null;
+        sizes[bucket] = 0;
+        windows[bucket] = -1L;
+    }
+
+    private static long[] resize(long[] table, int slots) {
+        long[] resized = new long[slots * 2];
+        if (table != null) {
+            for (int i = 0; i < table.length; i += 2) {
+                if (table[i] != 0L || table[i + 1] != 0L) insert(resized, table[i], table[i + 1]);
+            }
+        }
+        return resized;
+    }
+
+    private static void insert(long[] table, long hi, long lo) {
+        int mask = table.length / 2 - 1;
+        int slot = hash(hi, lo) & mask;
+        while (table[2 * slot] != 0L || table[2 * slot + 1] != 0L) {
+            slot = (slot + 1) & mask;
+        }
+        table[2 * slot] = hi;
+        table[2 * slot + 1] = lo;
+    }
+
+    private static int indexOf(long[] table, long hi, long lo) {
+        if (table == null) return -1;
+        int mask = table.length / 2 - 1;
+        int slot = hash(hi, lo) & mask;
+        while (table[2 * slot] != 0L || table[2 * slot + 1] != 0L) {
+            if (table[2 * slot] == hi && table[2 * slot + 1] == lo) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = (hi ^ Long.rotateLeft(lo, 31)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,54 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The {@link TimingWheel} shared by the in-memory state that expires with time, ticked every second.
+ * Channels are registered by name so that short-lived beans get the same channel on every request.
+ */
+@Startup
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ExpiryService {
+
+    private static final long TICK_SECONDS = 1;
+    // the finest level covers the login blocks and authorization codes, the next one about 18 hours for
+    // refresh tokens and revocations, the last one 194 days
+    private static final int SLOT_COUNT = 256;
+    private static final int LEVEL_COUNT = 3;
+
+    private final TimingWheel wheel = new TimingWheel(TICK_SECONDS, SLOT_COUNT, LEVEL_COUNT, Instant.now().getEpochSecond());
+    private final ConcurrentHashMap<String, TimingWheel.Channel<?>> channels = new ConcurrentHashMap<>();
+
+    /**
+     * @param listener receives the expired keys in batches; only used on the first registration of {@code name}
+     */
+    @SuppressWarnings("unchecked")
+    public <K> TimingWheel.Channel<K> channel(String name, Consumer<List<K>> listener) {
+        TimingWheel.Channel<?> channel = channels.get(name);
+        if (channel == null) {
+            channel = channels.computeIfAbsent(name, n -> wheel.channel(listener));
+        }
+        return (TimingWheel.Channel<K>) channel;
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    public void tick() {
+        wheel.advance(Instant.now().getEpochSecond());
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+}
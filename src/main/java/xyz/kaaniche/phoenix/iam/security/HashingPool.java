@@ -0,0 +1,195 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Runs password hashing off the request threads, on a fixed number of workers: Argon2 holds its whole memory
+ * cost while it runs, so the number of concurrent hashes is what bounds native memory. At most {@code queueCapacity}
+ * hashes wait for a worker, and none waits longer than {@code maxWaitMillis}: past either limit the caller gets a
+ * {@link SaturatedException} and its hash leaves the queue, instead of piling up. A hash that reached a worker
+ * in time runs to completion.
+ */
+public final class HashingPool {
+
+    /**
+     * The pool can't take the hash in time, the caller should ask the client to retry later.
+     */
+    public static final class SaturatedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        SaturatedException(long retryAfterSeconds) {
+            super("Password hashing is saturated", null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(HashingPool.class.getName());
+
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitNanos;
+    private final long retryAfterSeconds;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanosSeen = new AtomicLong();
+
+    /**
+     * @param memoryBudget  native memory hashing may use, in KiB
+     * @param memoryPerHash memory cost of one hash, in KiB
+     */
+    public static HashingPool sized(long memoryBudget, long memoryPerHash, int queueCapacity, long maxWaitMillis) {
+        int workers = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), memoryBudget / Math.max(1, memoryPerHash)));
+        LOGGER.info("Password hashing on " + workers + " workers, " + queueCapacity + " queued at most for " + maxWaitMillis + "ms");
+        return new HashingPool(workers, queueCapacity, maxWaitMillis);
+    }
+
+    HashingPool(int workers, int queueCapacity, long maxWaitMillis) {
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis + 999));
+    }
+
+    private static ThreadFactory threadFactory() {
+        try {
+            // container managed threads when deployed
+            return (ThreadFactory) new InitialContext().lookup("java:comp/DefaultManagedThreadFactory");
+        } catch (NamingException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return r -> {
+                Thread thread = new Thread(r, "password-hashing-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Runs the task on a worker and waits for it.
+     *
+     * @throws SaturatedException when the queue is full or no worker took the task within the max wait
+     */
+    public <T> T call(Callable<T> task) {
+        long enqueuedAt = System.nanoTime();
+        // taken by the worker starting the task, or by the caller giving up on it
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                long waited = System.nanoTime() - enqueuedAt;
+                recordWait(waited);
+                // the caller woke up late to give up
+                if (waited > maxWaitNanos) {
+                    throw saturated();
+                }
+                executed.increment();
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            throw saturated();
+        }
+        try {
+            try {
+                return future.get(maxWaitNanos - (System.nanoTime() - enqueuedAt), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (abandon(future, claimed)) {
+                    recordWait(System.nanoTime() - enqueuedAt);
+                    throw saturated();
+                }
+                // already running
+                return future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // a hash still queued must not run later, on a password the caller is about to wipe
+            abandon(future, claimed);
+            throw saturated();
+        }
+    }
+
+    /**
+     * @return false when a worker already started the task
+     */
+    private boolean abandon(Future<?> future, AtomicBoolean claimed) {
+        if (!claimed.compareAndSet(false, true)) {
+            return false;
+        }
+        future.cancel(false);
+        // frees the queue slot now rather than when a worker reaches it
+        executor.remove((Runnable) future);
+        return true;
+    }
+
+    private void recordWait(long waited) {
+        waits.increment();
+        waitNanos.add(waited);
+        maxWaitNanosSeen.accumulateAndGet(waited, Math::max);
+    }
+
+    private SaturatedException saturated() {
+        rejected.increment();
+        return new SaturatedException(retryAfterSeconds);
+    }
+
+    public int getWorkers() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return how many hashes wait for a worker
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the mean time hashes admitted to the queue spent waiting for a worker, or until given up, in
+     * milliseconds; hashes turned away by a full queue don't wait
+     */
+    public double getMeanWaitMillis() {
+        long count = waits.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanosSeen.get() / 1e6;
+    }
+}
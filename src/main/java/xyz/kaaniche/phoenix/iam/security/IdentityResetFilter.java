@@ -0,0 +1,28 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Clears the {@link IdentityUtility} thread locals around every request, secured or not: only
+ * {@link AuthenticationFilter} sets them, and a request it does not filter must not run with the roles
+ * left on the pooled thread by a previous caller.
+ */
+@Provider
+@PreMatching
+public class IdentityResetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        IdentityUtility.clear();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        IdentityUtility.clear();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Set;
 public class IdentityUtility {
     private static final ThreadLocal<String> username = new ThreadLocal<>();
     private static final ThreadLocal<Set<String>> roles = new ThreadLocal<>();
+    private static final ThreadLocal<Long> rolesMask = new ThreadLocal<>();
 
     private static final ThreadLocal<String> tenant = new ThreadLocal<>();
 
@@ -23,6 +24,14 @@ public class IdentityUtility {
         return IdentityUtility.roles.get();
     }
 
+    public static void setRolesMask(Long rolesMask){
+        IdentityUtility.rolesMask.set(rolesMask);
+    }
+
+    public static Long getRolesMask(){
+        return IdentityUtility.rolesMask.get();
+    }
+
     public static void tenantWithName(String tenant){
         IdentityUtility.tenant.set(tenant);
     }
@@ -30,4 +39,15 @@ public class IdentityUtility {
     public static String whichTenant(){
         return IdentityUtility.tenant.get();
     }
+
+    /**
+     * Forgets the caller bound to this thread, so that a pooled thread never serves a request with the
+     * identity of the previous one.
+     */
+    public static void clear(){
+        username.remove();
+        roles.remove();
+        rolesMask.remove();
+        tenant.remove();
+    }
 }
@@ -0,0 +1,35 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates random (version 4) UUID token ids without contending on the shared SecureRandom
+ * behind {@link UUID#randomUUID()}: every thread draws from its own DRBG instance.
+ */
+final class JtiGenerator {
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    });
+
+    private JtiGenerator() {
+    }
+
+    static String next() {
+        byte[] bytes = new byte[16];
+        RANDOM.get().nextBytes(bytes);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40); // version 4
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80); // IETF variant
+        long msb = 0L;
+        long lsb = 0L;
+        for (int i = 0; i < 8; i++) msb = (msb << 8) | (bytes[i] & 0xff);
+        for (int i = 8; i < 16; i++) lsb = (lsb << 8) | (bytes[i] & 0xff);
+        return new UUID(msb, lsb).toString();
+    }
+}
@@ -0,0 +1,71 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The public verification keys of a {@link KeyRing}, serialized once when the ring is built:
+ * the JWK Set document and each key alone, every body with its strong ETag.
+ * Bodies are shared between requests and must not be modified.
+ */
+public final class JwksDocument {
+
+    public record Entry(byte[] body, String etag) {
+    }
+
+    private final Entry keySet;
+    private final Map<String, Entry> keys;
+    private final long validUntil;
+
+    /**
+     * @param validUntil when the ring is next expected to change (epoch seconds)
+     */
+    JwksDocument(List<SigningKey> verificationKeys, long validUntil) {
+        List<JWK> publicKeys = new ArrayList<>();
+        Map<String, Entry> byKid = new HashMap<>();
+        for (SigningKey key : verificationKeys) {
+            publicKeys.add(key.publicKey());
+            byKid.put(key.kid(), entry(key.publicKey().toJSONString()));
+        }
+        this.keySet = entry(new JWKSet(publicKeys).toString());
+        this.keys = Map.copyOf(byKid);
+        this.validUntil = validUntil;
+    }
+
+    public Entry keySet() {
+        return keySet;
+    }
+
+    /**
+     * @return null when no verification key has this kid
+     */
+    public Entry key(String kid) {
+        return kid == null ? null : keys.get(kid);
+    }
+
+    /**
+     * @return how long the document may be cached, in seconds
+     */
+    public long maxAge(long now) {
+        return Math.max(0L, validUntil - now);
+    }
+
+    private static Entry entry(String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return new Entry(body, '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"');
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,33 +1,44 @@
 package xyz.kaaniche.phoenix.iam.security;
 
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.Ed25519Signer;
-import com.nimbusds.jose.crypto.Ed25519Verifier;
 import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.OctetKeyPair;
 import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jwt.JWTClaimNames;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
 import jakarta.ejb.EJBException;
 import jakarta.ejb.LocalBean;
+import jakarta.ejb.Schedule;
 import jakarta.ejb.Singleton;
 import jakarta.ejb.Startup;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.text.ParseException;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Issues and validates Ed25519 signed JWTs.
+ * Keys live in an immutable {@link KeyRing} that is swapped atomically on rotation, so request threads
+ * only read the current ring and never generate keys: the bean manages its own concurrency.
+ * <p>
+ * When {@code key.ring.file} is configured the ring is persisted by a {@link KeyRingStore}: it survives
+ * restarts, and nodes sharing the file rotate it in turn and verify each other's tokens.
+ */
 @Startup
 @Singleton
 @LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class JwtManager {
 
     // --- Standardized claim names ---
@@ -38,17 +49,30 @@ public class JwtManager {
     public static final String CLAIM_TENANT_ID = "tenant_id";
     public static final String CLAIM_CLIENT_ID = "client_id";
     public static final String CLAIM_SCOPE = "scope";
+    // Refresh token family, shared by all the refresh tokens rotated from one authorization code grant
+    public static final String CLAIM_FAMILY_ID = "fid";
 
     // Small clock-skew tolerance (seconds)
-    private static final long CLOCK_SKEW_SECONDS = 60;
+    static final long CLOCK_SKEW_SECONDS = 60;
+
+    // Refresh tokens live 3 hours
+    static final long REFRESH_TOKEN_LIFETIME_SECONDS = 3 * 3600;
+
+    // Period of the rotation timer (seconds)
+    private static final long ROTATION_PERIOD_SECONDS = 60;
+
+    // Minimum delay between two checks of the key ring file for an unknown kid (milliseconds)
+    private static final long RELOAD_INTERVAL_MILLIS = 1000;
 
     private final Config config = ConfigProvider.getConfig();
 
-    private final Map<String, Long> keyPairExpirationTimes = new HashMap<>();
-    private final Set<OctetKeyPair> cachedKeyPairs = new HashSet<>();
+    private final AtomicReference<KeyRing> keyRing = new AtomicReference<>(KeyRing.EMPTY);
 
     private final Long keyPairLifetimeDuration = config.getValue("key.pair.lifetime.duration", Long.class);
     private final Short keyPairCacheSize = config.getValue("key.pair.cache.size", Short.class);
+    // How long the next key is published before it starts signing (seconds)
+    private final Long keyPairPublishLeadDuration =
+            config.getOptionalValue("key.pair.publish.lead.duration", Long.class).orElse(900L);
 
     private final Integer jwtLifetimeDuration = config.getValue("jwt.lifetime.duration", Integer.class);
     private final String issuer = config.getValue("jwt.issuer", String.class);
@@ -56,46 +80,168 @@ public class JwtManager {
 
     private final String claimRoles = config.getValue("jwt.claim.roles", String.class);
 
+    // Optional compact claim carrying the raw Role bitmask next to the role names
+    private final String claimRolesMask = config.getOptionalValue("jwt.claim.roles.mask", String.class).orElse(null);
+
+    // Opt-in: 0 disables the verified-token cache
+    private final VerifiedTokenCache verifiedTokenCache =
+            new VerifiedTokenCache(config.getOptionalValue("jwt.verified.cache.size", Integer.class).orElse(0));
+
+    // "nimbus" (default) builds tokens through JWTClaimsSet, "template" uses the precompiled JwtTemplate
+    private final boolean templateSerializer =
+            "template".equals(config.getOptionalValue("jwt.serializer", String.class).orElse("nimbus"));
+
+    private final JwtTemplate accessTemplate = new JwtTemplate(
+            accessClaims("tenant", "subject", "scope", new String[0], 0L, "jti", Instant.EPOCH),
+            Stream.of(JWTClaimNames.SUBJECT, "upn", CLAIM_TENANT_ID, CLAIM_SCOPE, claimRoles, JWTClaimNames.JWT_ID,
+                    JWTClaimNames.ISSUED_AT, JWTClaimNames.NOT_BEFORE, JWTClaimNames.EXPIRATION_TIME, claimRolesMask)
+                    .filter(Objects::nonNull)
+                    .toList());
+
+    private final JwtTemplate refreshTemplate = new JwtTemplate(
+            refreshClaims("client", "subject", "scope", "family", "jti", Instant.EPOCH),
+            List.of(JWTClaimNames.SUBJECT, CLAIM_TENANT_ID, CLAIM_CLIENT_ID, CLAIM_SCOPE, CLAIM_FAMILY_ID,
+                    JWTClaimNames.JWT_ID, JWTClaimNames.ISSUED_AT, JWTClaimNames.NOT_BEFORE, JWTClaimNames.EXPIRATION_TIME));
+
     private final OctetKeyPairGenerator keyPairGenerator = new OctetKeyPairGenerator(Curve.Ed25519);
 
+    // null: keys are kept in memory only
+    private final KeyRingStore keyRingStore;
+    private volatile long lastReload;
+
+    public JwtManager() {
+        this.keyRingStore = KeyRingStore.fromConfig(config);
+    }
+
+    JwtManager(KeyRingStore keyRingStore) {
+        this.keyRingStore = keyRingStore;
+    }
+
     @PostConstruct
     public void start() {
-        while (cachedKeyPairs.size() < keyPairCacheSize) {
-            cachedKeyPairs.add(generateKeyPair());
-        }
+        rotate(Instant.now().getEpochSecond());
     }
 
-    public String generateAccessToken(String tenantId, String subject, String approvedScopes, String[] roles) {
+    /**
+     * Background rotation: announces the next key ahead of its use, promotes it once the active one
+     * stops signing, drops keys that can no longer verify any live token and refills the standby keys.
+     * With a key ring file, this also picks up the rotations made by the other nodes.
+     */
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void rotateKeys() {
+        rotate(Instant.now().getEpochSecond());
+    }
+
+    synchronized void rotate(long now) {
+        if (keyRingStore == null) {
+            publish(rotate(keyRing.get(), now));
+            return;
+        }
         try {
-            OctetKeyPair keyPair = getKeyPair()
-                    .orElseThrow(() -> new EJBException("Unable to retrieve a valid Ed25519 KeyPair"));
+            publish(keyRingStore.update(current -> rotate(current, now)));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new EJBException(e);
+        }
+    }
 
-            JWSSigner signer = new Ed25519Signer(keyPair);
+    /**
+     * @return {@code current} itself when there is nothing to rotate
+     */
+    private KeyRing rotate(KeyRing current, long now) {
+        boolean changed = false;
+        SigningKey active = current.active();
+        SigningKey next = current.next();
+        long nextPublishAt = current.nextPublishAt();
+        Deque<SigningKey> standby = new ArrayDeque<>(current.standby());
+        List<SigningKey> retired = new ArrayList<>();
+        for (SigningKey key : current.retired()) {
+            if (key.retireAt() >= now) {
+                retired.add(key);
+            } else {
+                changed = true;
+            }
+        }
 
-            JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.EdDSA)
-                    .keyID(keyPair.getKeyID())
-                    .type(JOSEObjectType.JWT)
-                    .build();
+        if (active == null || active.notAfter() < now) {
+            changed = true;
+            if (active != null && active.retireAt() >= now) {
+                retired.add(active);
+            }
+            SigningKey promoted = next != null ? next : standby.isEmpty() ? generateKey() : standby.poll();
+            long notAfter = now + keyPairLifetimeDuration;
+            // a token signed at notAfter must stay verifiable until it expires, even if rotation runs late
+            active = promoted.activate(notAfter, notAfter + maxTokenLifetime() + CLOCK_SKEW_SECONDS + ROTATION_PERIOD_SECONDS);
+            next = null;
+            nextPublishAt = notAfter - keyPairPublishLeadDuration;
+        }
 
-            Instant now = Instant.now();
+        if (next == null && nextPublishAt <= now) {
+            next = standby.isEmpty() ? generateKey() : standby.poll();
+            changed = true;
+        }
+
+        while (standby.size() + (next != null ? 1 : 0) < keyPairCacheSize - 1) {
+            standby.add(generateKey());
+            changed = true;
+        }
+
+        return changed ? new KeyRing(active, next, nextPublishAt, new ArrayList<>(standby), retired) : current;
+    }
+
+    private void publish(KeyRing next) {
+        KeyRing previous = keyRing.getAndSet(next);
+        for (SigningKey key : previous.keys()) {
+            if (next.find(key.kid()) == null) {
+                verifiedTokenCache.evictKid(key.kid());
+            }
+        }
+    }
+
+    /**
+     * Picks up a key ring written by another node, at most once per {@link #RELOAD_INTERVAL_MILLIS}.
+     */
+    private void reloadIfChanged() {
+        long now = System.currentTimeMillis();
+        if (keyRingStore == null || now - lastReload < RELOAD_INTERVAL_MILLIS) return;
+        synchronized (this) {
+            if (now - lastReload < RELOAD_INTERVAL_MILLIS) return;
+            lastReload = now;
+            try {
+                if (keyRingStore.hasChanged()) {
+                    publish(keyRingStore.read());
+                }
+            } catch (IOException | GeneralSecurityException e) {
+                throw new EJBException(e);
+            }
+        }
+    }
+
+    private long maxTokenLifetime() {
+        return Math.max(jwtLifetimeDuration, REFRESH_TOKEN_LIFETIME_SECONDS);
+    }
+
+    public String generateAccessToken(String tenantId, String subject, String approvedScopes, String[] roles) {
+        return generateAccessToken(tenantId, subject, approvedScopes, roles, null);
+    }
 
-            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                    .issuer(issuer)
-                    .audience(audiences)
-                    .subject(subject)
-                    .claim("upn", subject)
-                    .claim(CLAIM_TENANT_ID, tenantId)
-                    .claim(CLAIM_SCOPE, normalizeScopes(approvedScopes))
-                    .claim(claimRoles, roles)
-                    .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_ACCESS)
-                    .jwtID(UUID.randomUUID().toString())
-                    .issueTime(Date.from(now))
-                    .notBeforeTime(Date.from(now))
-                    .expirationTime(Date.from(now.plus(jwtLifetimeDuration, ChronoUnit.SECONDS)))
-                    .build();
-
-            SignedJWT jwt = new SignedJWT(header, claimsSet);
-            jwt.sign(signer);
+    /**
+     * @param rolesMask the raw {@code Role} bitmask, written to the compact roles claim when it is configured
+     */
+    public String generateAccessToken(String tenantId, String subject, String approvedScopes, String[] roles,
+                                      Long rolesMask) {
+        SigningKey key = activeKey();
+        Instant now = Instant.now();
+        return templateSerializer
+                ? templateAccessToken(key, tenantId, subject, approvedScopes, roles, rolesMask, JtiGenerator.next(), now)
+                : nimbusAccessToken(key, tenantId, subject, approvedScopes, roles, rolesMask, UUID.randomUUID().toString(), now);
+    }
+
+    String nimbusAccessToken(SigningKey key, String tenantId, String subject, String approvedScopes, String[] roles,
+                             Long rolesMask, String jti, Instant now) {
+        try {
+            SignedJWT jwt = new SignedJWT(key.header(),
+                    accessClaims(tenantId, subject, approvedScopes, roles, rolesMask, jti, now));
+            jwt.sign(key.signer());
             return jwt.serialize();
 
         } catch (JOSEException e) {
@@ -103,55 +249,148 @@ public class JwtManager {
         }
     }
 
+    String templateAccessToken(SigningKey key, String tenantId, String subject, String approvedScopes, String[] roles,
+                               Long rolesMask, String jti, Instant now) {
+        try {
+            long iat = now.getEpochSecond();
+            return accessTemplate.sign(key, subject, subject, tenantId, Scopes.canonical(approvedScopes), roles, jti,
+                    iat, iat, iat + jwtLifetimeDuration, rolesMask);
+
+        } catch (JOSEException e) {
+            throw new EJBException(e);
+        }
+    }
+
+    private JWTClaimsSet accessClaims(String tenantId, String subject, String approvedScopes, String[] roles,
+                                      Long rolesMask, String jti, Instant now) {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience(audiences)
+                .subject(subject)
+                .claim("upn", subject)
+                .claim(CLAIM_TENANT_ID, tenantId)
+                .claim(CLAIM_SCOPE, Scopes.canonical(approvedScopes))
+                .claim(claimRoles, roles)
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_ACCESS)
+                .jwtID(jti)
+                .issueTime(Date.from(now))
+                .notBeforeTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(jwtLifetimeDuration, ChronoUnit.SECONDS)));
+        if (claimRolesMask != null) {
+            builder.claim(claimRolesMask, rolesMask);
+        }
+        return builder.build();
+    }
+
     /**
      * Refresh token should be bound to the CLIENT (OAuth client_id) and optionally tenant_id.
      * Here we store BOTH to avoid confusion:
      * - client_id: the OAuth client (tenant/application)
      * - tenant_id: optional same value, keep if your system expects it
+     * <p>
+     * Starts a new refresh token family.
      */
     public String generateRefreshToken(String clientId, String subject, String approvedScope) {
-        try {
-            OctetKeyPair keyPair = getKeyPair()
-                    .orElseThrow(() -> new EJBException("Unable to retrieve a valid Ed25519 KeyPair"));
+        return generateRefreshToken(clientId, subject, approvedScope, JtiGenerator.next());
+    }
 
-            JWSSigner signer = new Ed25519Signer(keyPair);
+    /**
+     * Issues the next refresh token of an existing family, see {@link RefreshTokenStore}.
+     */
+    public String generateRefreshToken(String clientId, String subject, String approvedScope, String familyId) {
+        SigningKey key = activeKey();
+        Instant now = Instant.now();
+        return templateSerializer
+                ? templateRefreshToken(key, clientId, subject, approvedScope, familyId, JtiGenerator.next(), now)
+                : nimbusRefreshToken(key, clientId, subject, approvedScope, familyId, UUID.randomUUID().toString(), now);
+    }
 
-            JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.EdDSA)
-                    .keyID(keyPair.getKeyID())
-                    .type(JOSEObjectType.JWT)
-                    .build();
+    String nimbusRefreshToken(SigningKey key, String clientId, String subject, String approvedScope, String familyId,
+                              String jti, Instant now) {
+        try {
+            SignedJWT jwt = new SignedJWT(key.header(),
+                    refreshClaims(clientId, subject, approvedScope, familyId, jti, now));
+            jwt.sign(key.signer());
+            return jwt.serialize();
 
-            Instant now = Instant.now();
+        } catch (JOSEException e) {
+            throw new EJBException(e);
+        }
+    }
 
-            JWTClaimsSet claims = new JWTClaimsSet.Builder()
-                    .issuer(issuer)
-                    .audience(audiences)
-                    .subject(subject)
-                    // keep compatibility: some code expects tenant_id
-                    .claim(CLAIM_TENANT_ID, clientId)
-                    // correct semantic name:
-                    .claim(CLAIM_CLIENT_ID, clientId)
-                    .claim(CLAIM_SCOPE, normalizeScopes(approvedScope))
-                    .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH)
-                    .jwtID(UUID.randomUUID().toString())
-                    .issueTime(Date.from(now))
-                    .notBeforeTime(Date.from(now))
-                    .expirationTime(Date.from(now.plus(3, ChronoUnit.HOURS)))
-                    .build();
-
-            SignedJWT jwt = new SignedJWT(header, claims);
-            jwt.sign(signer);
-            return jwt.serialize();
+    String templateRefreshToken(SigningKey key, String clientId, String subject, String approvedScope, String familyId,
+                                String jti, Instant now) {
+        try {
+            long iat = now.getEpochSecond();
+            return refreshTemplate.sign(key, subject, clientId, clientId, Scopes.canonical(approvedScope), familyId, jti,
+                    iat, iat, iat + REFRESH_TOKEN_LIFETIME_SECONDS);
 
         } catch (JOSEException e) {
             throw new EJBException(e);
         }
     }
 
+    private JWTClaimsSet refreshClaims(String clientId, String subject, String approvedScope, String familyId,
+                                       String jti, Instant now) {
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience(audiences)
+                .subject(subject)
+                // keep compatibility: some code expects tenant_id
+                .claim(CLAIM_TENANT_ID, clientId)
+                // correct semantic name:
+                .claim(CLAIM_CLIENT_ID, clientId)
+                .claim(CLAIM_SCOPE, Scopes.canonical(approvedScope))
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH)
+                .claim(CLAIM_FAMILY_ID, familyId)
+                .jwtID(jti)
+                .issueTime(Date.from(now))
+                .notBeforeTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(REFRESH_TOKEN_LIFETIME_SECONDS)))
+                .build();
+    }
+
     public Optional<SignedJWT> validateAccessToken(String token) {
         return validateJWT(token, TOKEN_TYPE_ACCESS);
     }
 
+    /**
+     * Validates an access token and extracts what request authentication needs.
+     * When the verified-token cache is enabled, the signature is only checked on a cache miss;
+     * cached entries are only served while unexpired and while their kid is still in the key ring.
+     */
+    public Optional<VerifiedToken> authenticateAccessToken(String token) {
+        long now = Instant.now().getEpochSecond();
+        if (verifiedTokenCache.isEnabled()) {
+            VerifiedToken cached = verifiedTokenCache.get(token, now);
+            if (cached != null && keyRing.get().find(cached.kid()) != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        Optional<SignedJWT> jwt = validateAccessToken(token);
+        if (jwt.isEmpty()) return Optional.empty();
+
+        try {
+            JWTClaimsSet claims = jwt.get().getJWTClaimsSet();
+            String[] roles = claims.getStringArrayClaim(claimRoles);
+            VerifiedToken verified = new VerifiedToken(
+                    claims.getSubject(),
+                    roles != null ? Set.copyOf(Arrays.asList(roles)) : Set.of(),
+                    claimRolesMask != null ? claims.getLongClaim(claimRolesMask) : null,
+                    claims.getExpirationTime().toInstant().getEpochSecond(),
+                    jwt.get().getHeader().getKeyID(),
+                    claims.getJWTID(),
+                    claims.getIssueTime() != null ? claims.getIssueTime().toInstant().getEpochSecond() : 0L);
+            if (verifiedTokenCache.isEnabled()) {
+                verifiedTokenCache.put(token, verified, now);
+            }
+            return Optional.of(verified);
+        } catch (ParseException e) {
+            return Optional.empty();
+        }
+    }
+
     public Optional<SignedJWT> validateRefreshToken(String token) {
         return validateJWT(token, TOKEN_TYPE_REFRESH);
     }
@@ -167,14 +406,15 @@ public class JwtManager {
         try {
             SignedJWT parsed = SignedJWT.parse(token);
 
-            OctetKeyPair publicKey = cachedKeyPairs.stream()
-                    .filter(kp -> kp.getKeyID().equals(parsed.getHeader().getKeyID()))
-                    .findFirst()
-                    .orElseThrow(() -> new EJBException("Unable to retrieve the key pair associated with the kid"))
-                    .toPublicJWK();
+            SigningKey key = keyRing.get().find(parsed.getHeader().getKeyID());
+            if (key == null) {
+                // the key may have been added by another node since the last rotation
+                reloadIfChanged();
+                key = keyRing.get().find(parsed.getHeader().getKeyID());
+                if (key == null) return Optional.empty();
+            }
 
-            JWSVerifier verifier = new Ed25519Verifier(publicKey);
-            if (!parsed.verify(verifier)) return Optional.empty();
+            if (!parsed.verify(key.verifier())) return Optional.empty();
 
             JWTClaimsSet claims = parsed.getJWTClaimsSet();
             Instant now = Instant.now();
@@ -213,71 +453,45 @@ public class JwtManager {
         }
     }
 
-    public OctetKeyPair getPublicValidationKey(String kid) {
-        return cachedKeyPairs.stream()
-                .filter(kp -> kp.getKeyID().equals(kid))
-                .findFirst()
-                .orElseThrow(() -> new EJBException("Unable to retrieve the key pair associated with the kid"))
-                .toPublicJWK();
+    /**
+     * @return the current verification keys, serialized when the key ring last changed
+     */
+    public JwksDocument getJwks() {
+        return keyRing.get().jwks();
     }
 
-    private OctetKeyPair generateKeyPair() {
-        try {
-            long currentUTCSeconds = LocalDateTime.now(ZoneId.of("UTC")).toEpochSecond(ZoneOffset.UTC);
-            String kid = UUID.randomUUID().toString();
-
-            keyPairExpirationTimes.put(kid, currentUTCSeconds + keyPairLifetimeDuration);
+    SigningKey activeKey() {
+        SigningKey active = keyRing.get().active();
+        if (active == null) {
+            throw new EJBException("Unable to retrieve a valid Ed25519 KeyPair");
+        }
+        return active;
+    }
 
-            return keyPairGenerator
+    private SigningKey generateKey() {
+        try {
+            return new SigningKey(keyPairGenerator
                     .keyUse(KeyUse.SIGNATURE)
-                    .keyID(kid)
-                    .generate();
+                    .keyID(UUID.randomUUID().toString())
+                    .generate());
 
         } catch (JOSEException e) {
             throw new EJBException(e);
         }
     }
 
-    private boolean hasNotExpired(OctetKeyPair keyPair) {
-        long now = LocalDateTime.now(ZoneId.of("UTC")).toEpochSecond(ZoneOffset.UTC);
-        Long exp = keyPairExpirationTimes.get(keyPair.getKeyID());
-        return exp != null && now <= exp;
-    }
-
-    private boolean isPublicKeyExpired(OctetKeyPair keyPair) {
-        long now = LocalDateTime.now(ZoneId.of("UTC")).toEpochSecond(ZoneOffset.UTC);
-        Long exp = keyPairExpirationTimes.get(keyPair.getKeyID());
-        if (exp == null) return true;
-        return now > (exp + jwtLifetimeDuration);
-    }
-
-    private Optional<OctetKeyPair> getKeyPair() {
-        // prune expired public keys + prune metadata (prevents memory leak)
-        cachedKeyPairs.removeIf(kp -> {
-            boolean expired = isPublicKeyExpired(kp);
-            if (expired) keyPairExpirationTimes.remove(kp.getKeyID());
-            return expired;
-        });
-
-        while (cachedKeyPairs.stream().filter(this::hasNotExpired).count() < keyPairCacheSize) {
-            cachedKeyPairs.add(generateKeyPair());
-        }
-
-        return cachedKeyPairs.stream().filter(this::hasNotExpired).findAny();
-    }
-
-    private static String normalizeScopes(String scopes) {
-        if (scopes == null) return "";
-        // normalize whitespace to single spaces
-        return String.join(" ", Arrays.stream(scopes.trim().split("\\s+"))
-                .filter(s -> !s.isBlank())
-                .toList());
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return verifiedTokenCache;
     }
 
     public String getClaimRoles() {
         return claimRoles;
     }
 
+    public Optional<String> getClaimRolesMask() {
+        return Optional.ofNullable(claimRolesMask);
+    }
+
     public String getIssuer() {
         return issuer;
     }
@@ -0,0 +1,161 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes and signs JWTs of a fixed shape without going through {@link JWTClaimsSet}.
+ * <p>
+ * The claim layout is learnt once from a sample claims set, so the payload keeps the exact claim order
+ * and escaping of the Nimbus serialization: constant claims (issuer, audiences, token type) are rendered
+ * once, and only the per-token claims are appended into a reused per-thread buffer. Tokens minted for the
+ * same values are therefore byte-identical to the ones produced through Nimbus.
+ */
+final class JwtTemplate {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    /**
+     * Serialization order of a claims set.
+     *
+     * @param fragments for each claim: its rendered "name":value pair when constant,
+     *                  or its "name": prefix when the value is supplied per token
+     * @param arguments for each claim: -1 when constant, else the index of its per-token value
+     */
+    private record Layout(String[] fragments, int[] arguments) {}
+
+    private final JWTClaimsSet sample;
+    private final List<String> variableClaims;
+    // Nimbus claim order depends on which claims are present: one layout per combination of null claims
+    private final Map<Integer, Layout> layouts = new ConcurrentHashMap<>();
+
+    /**
+     * @param sample         a claims set with every claim present, as built by the Nimbus path
+     * @param variableClaims the per-token claims, in the order their values are passed to {@link #sign}
+     */
+    JwtTemplate(JWTClaimsSet sample, List<String> variableClaims) {
+        if (variableClaims.size() > Integer.SIZE) {
+            throw new IllegalArgumentException("Too many per-token claims");
+        }
+        this.sample = sample;
+        this.variableClaims = List.copyOf(variableClaims);
+        layouts.put(0, layout(0));
+    }
+
+    /**
+     * @param values the per-token claim values (String, String[] or Long); null claims are omitted,
+     *               values past the template's per-token claims are ignored
+     */
+    String sign(SigningKey key, Object... values) throws JOSEException {
+        int nulls = 0;
+        for (int i = 0; i < variableClaims.size(); i++) {
+            if (values[i] == null) nulls |= 1 << i;
+        }
+        Layout layout = nulls == 0 ? layouts.get(0) : layouts.computeIfAbsent(nulls, this::layout);
+
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        sb.append('{');
+        String[] fragments = layout.fragments();
+        int[] arguments = layout.arguments();
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(fragments[i]);
+            if (arguments[i] >= 0) appendValue(sb, values[arguments[i]]);
+        }
+        sb.append('}');
+        String payload = BASE64URL.encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        sb.setLength(0);
+        sb.append(key.header().toBase64URL()).append('.').append(payload);
+        byte[] signingInput = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        return sb.append('.').append(key.signer().sign(key.header(), signingInput)).toString();
+    }
+
+    private Layout layout(int nulls) {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder(sample);
+        for (int i = 0; i < variableClaims.size(); i++) {
+            if ((nulls & (1 << i)) != 0) builder.claim(variableClaims.get(i), null);
+        }
+        // re-parsed from the serialized payload: the parsed map keeps document order
+        Map<String, Object> json;
+        try {
+            json = JSONObjectUtils.parse(builder.build().toPayload().toString());
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+        List<String> fragments = new ArrayList<>();
+        int[] arguments = new int[json.size()];
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> claim : json.entrySet()) {
+            sb.setLength(0);
+            appendString(sb, claim.getKey());
+            sb.append(':');
+            int argument = variableClaims.indexOf(claim.getKey());
+            if (argument < 0) {
+                appendValue(sb, claim.getValue());
+            }
+            arguments[fragments.size()] = argument;
+            fragments.add(sb.toString());
+        }
+        return new Layout(fragments.toArray(new String[0]), arguments);
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String s) {
+            appendString(sb, s);
+        } else if (value instanceof Number n) {
+            sb.append(n.longValue());
+        } else if (value instanceof String[] array) {
+            appendArray(sb, List.of(array));
+        } else if (value instanceof List<?> list) {
+            appendArray(sb, list);
+        } else {
+            throw new IllegalArgumentException("Unsupported claim value: " + value.getClass());
+        }
+    }
+
+    private static void appendArray(StringBuilder sb, List<?> values) {
+        sb.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendValue(sb, values.get(i));
+        }
+        sb.append(']');
+    }
+
+    // Same escaping as the JSON writer used by Nimbus
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\b' -> sb.append("\\b");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\f' -> sb.append("\\f");
+                default -> {
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
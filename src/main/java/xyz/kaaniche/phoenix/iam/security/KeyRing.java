@@ -0,0 +1,99 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the signing keys: one active key, the next key announced to replace it,
+ * the standby keys after it, and the retired keys still accepted for verification. Lookups by kid are O(1).
+ * <p>
+ * A key goes through next, active and retired: the next key is published in the JWKS from
+ * {@code nextPublishAt} on, ahead of signing anything, so that resource servers already have it
+ * when the first token it signs reaches them.
+ * A new ring is built on every rotation and published atomically by {@link JwtManager}, together with
+ * its pre-serialized {@link JwksDocument}.
+ */
+final class KeyRing {
+    static final KeyRing EMPTY = new KeyRing(null, null, Long.MAX_VALUE, List.of(), List.of());
+
+    private final SigningKey active;
+    private final SigningKey next;
+    private final long nextPublishAt;
+    private final List<SigningKey> standby;
+    private final List<SigningKey> retired;
+    private final Map<String, SigningKey> byKid;
+    private final JwksDocument jwks;
+
+    /**
+     * @param next          the announced next key, null until {@code nextPublishAt}
+     * @param nextPublishAt when the next key gets announced (epoch seconds)
+     */
+    KeyRing(SigningKey active, SigningKey next, long nextPublishAt, List<SigningKey> standby, List<SigningKey> retired) {
+        this.active = active;
+        this.next = next;
+        this.nextPublishAt = nextPublishAt;
+        this.standby = List.copyOf(standby);
+        this.retired = List.copyOf(retired);
+        Map<String, SigningKey> index = new HashMap<>();
+        if (active != null) index.put(active.kid(), active);
+        if (next != null) index.put(next.kid(), next);
+        this.standby.forEach(k -> index.put(k.kid(), k));
+        this.retired.forEach(k -> index.put(k.kid(), k));
+        this.byKid = Map.copyOf(index);
+
+        // the published keys, and the next change: an announcement, a promotion or a retired key leaving
+        List<SigningKey> verificationKeys = new ArrayList<>();
+        long validUntil = Long.MAX_VALUE;
+        if (next != null) {
+            verificationKeys.add(next);
+        }
+        if (active != null) {
+            verificationKeys.add(active);
+            validUntil = next == null ? Math.min(nextPublishAt, active.notAfter()) : active.notAfter();
+        }
+        for (SigningKey key : this.retired) {
+            verificationKeys.add(key);
+            validUntil = Math.min(validUntil, key.retireAt());
+        }
+        this.jwks = new JwksDocument(verificationKeys, validUntil);
+    }
+
+    SigningKey active() {
+        return active;
+    }
+
+    SigningKey next() {
+        return next;
+    }
+
+    long nextPublishAt() {
+        return nextPublishAt;
+    }
+
+    List<SigningKey> standby() {
+        return standby;
+    }
+
+    List<SigningKey> retired() {
+        return retired;
+    }
+
+    JwksDocument jwks() {
+        return jwks;
+    }
+
+    Collection<SigningKey> keys() {
+        return byKid.values();
+    }
+
+    SigningKey find(String kid) {
+        return kid == null ? null : byKid.get(kid);
+    }
+
+    int size() {
+        return byKid.size();
+    }
+}
@@ -0,0 +1,226 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.eclipse.microprofile.config.Config;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the {@link KeyRing} in a file, typically on a volume shared by all the nodes, so that a restart
+ * keeps the keys and any node verifies the tokens signed by the others.
+ * <p>
+ * The file holds the ring as JSON encrypted with ChaCha20-Poly1305 under {@code key.ring.secret}
+ * (32 bytes, Base64): {@code magic | nonce | ciphertext}, the magic being authenticated too. It is read
+ * through a memory mapping and replaced atomically, so readers never see a partial ring; updates are
+ * serialized between nodes by an exclusive lock on a sibling {@code .lock} file.
+ * The last ring read is kept with the file's modification time and size, so that polling for changes
+ * only costs a stat.
+ */
+final class KeyRingStore {
+
+    private static final byte[] MAGIC = "PKR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int NONCE_LEN = 12;
+
+    private final Path file;
+    private final Path lockFile;
+    private final SecretKey secret;
+    private final SecureRandom random = new SecureRandom();
+
+    private KeyRing lastRing = KeyRing.EMPTY;
+    private Object lastFileKey;
+    private long lastModified = -1L;
+    private long lastSize = -1L;
+
+    KeyRingStore(Path file, byte[] secret) {
+        if (secret.length != 32) {
+            throw new IllegalArgumentException("key.ring.secret must be 32 bytes");
+        }
+        this.file = file.toAbsolutePath();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        this.secret = new SecretKeySpec(secret, "ChaCha20");
+    }
+
+    /**
+     * @return the store configured by {@code key.ring.file} and {@code key.ring.secret}, or null when the
+     * ring is kept in memory only
+     */
+    static KeyRingStore fromConfig(Config config) {
+        return config.getOptionalValue("key.ring.file", String.class)
+                .map(path -> new KeyRingStore(Path.of(path),
+                        Base64.getDecoder().decode(config.getValue("key.ring.secret", String.class))))
+                .orElse(null);
+    }
+
+    /**
+     * Reads the ring, applies {@code rotation} to it and writes the result back when it changed,
+     * holding the lock shared with the other nodes.
+     */
+    // the lock is only held for the block, never read
+    @SuppressWarnings("try")
+    synchronized KeyRing update(UnaryOperator<KeyRing> rotation) throws IOException, GeneralSecurityException {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            KeyRing current = read();
+            KeyRing next = rotation.apply(current);
+            if (next != current) {
+                write(next);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * @return true when the file was replaced since it was last read
+     */
+    synchronized boolean hasChanged() throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            // every write is a new file: its inode changes even within the timestamp resolution
+            return !Objects.equals(attributes.fileKey(), lastFileKey)
+                    || attributes.lastModifiedTime().toMillis() != lastModified || attributes.size() != lastSize;
+        } catch (NoSuchFileException e) {
+            return lastSize != -1L;
+        }
+    }
+
+    /**
+     * @return the ring in the file, {@link KeyRing#EMPTY} when there is no file yet
+     */
+    synchronized KeyRing read() throws IOException, GeneralSecurityException {
+        if (!hasChanged()) {
+            return lastRing;
+        }
+        BasicFileAttributes attributes;
+        ByteBuffer plaintext;
+        // attributes first: should the file be replaced meanwhile, the next poll reads it again
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            lastRing = KeyRing.EMPTY;
+            lastFileKey = null;
+            lastModified = lastSize = -1L;
+            return lastRing;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < MAGIC.length + NONCE_LEN) {
+                throw new GeneralSecurityException("Truncated key ring " + file);
+            }
+            byte[] magic = new byte[MAGIC.length];
+            byte[] nonce = new byte[NONCE_LEN];
+            mapped.get(magic).get(nonce);
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, nonce);
+            cipher.updateAAD(magic);
+            plaintext = ByteBuffer.allocate(cipher.getOutputSize(mapped.remaining()));
+            cipher.doFinal(mapped, plaintext);
+            plaintext.flip();
+        }
+        try {
+            lastRing = decode(JSONObjectUtils.parse(StandardCharsets.UTF_8.decode(plaintext).toString()));
+        } catch (ParseException | JOSEException e) {
+            throw new GeneralSecurityException("Malformed key ring " + file, e);
+        }
+        remember(attributes);
+        return lastRing;
+    }
+
+    private void write(KeyRing ring) throws IOException, GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LEN];
+        random.nextBytes(nonce);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, nonce);
+        cipher.updateAAD(MAGIC);
+        byte[] ciphertext = cipher.doFinal(JSONObjectUtils.toJSONString(encode(ring)).getBytes(StandardCharsets.UTF_8));
+
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.allocate(MAGIC.length + NONCE_LEN + ciphertext.length)
+                    .put(MAGIC).put(nonce).put(ciphertext).flip();
+            while (content.hasRemaining()) channel.write(content);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        lastRing = ring;
+        remember(Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    private void remember(BasicFileAttributes attributes) {
+        lastFileKey = attributes.fileKey();
+        lastModified = attributes.lastModifiedTime().toMillis();
+        lastSize = attributes.size();
+    }
+
+    private Cipher cipher(int mode, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("ChaCha20-Poly1305");
+        cipher.init(mode, secret, new IvParameterSpec(nonce));
+        return cipher;
+    }
+
+    private static Map<String, Object> encode(KeyRing ring) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        if (ring.active() != null) json.put("active", encodeKey(ring.active()));
+        if (ring.next() != null) json.put("next", encodeKey(ring.next()));
+        json.put("nextPublishAt", ring.nextPublishAt());
+        json.put("standby", ring.standby().stream().map(KeyRingStore::encodeKey).toList());
+        json.put("retired", ring.retired().stream().map(KeyRingStore::encodeKey).toList());
+        return json;
+    }
+
+    private static Map<String, Object> encodeKey(SigningKey key) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("jwk", key.keyPair().toJSONObject());
+        json.put("notAfter", key.notAfter());
+        json.put("retireAt", key.retireAt());
+        return json;
+    }
+
+    private static KeyRing decode(Map<String, Object> json) throws ParseException, JOSEException {
+        Map<String, Object> active = JSONObjectUtils.getJSONObject(json, "active");
+        Map<String, Object> next = JSONObjectUtils.getJSONObject(json, "next");
+        return new KeyRing(active == null ? null : decodeKey(active),
+                next == null ? null : decodeKey(next),
+                JSONObjectUtils.getLong(json, "nextPublishAt"),
+                decodeAll(JSONObjectUtils.getJSONObjectArray(json, "standby")),
+                decodeAll(JSONObjectUtils.getJSONObjectArray(json, "retired")));
+    }
+
+    private static List<SigningKey> decodeAll(Map<String, Object>[] keys) throws ParseException, JOSEException {
+        List<SigningKey> decoded = new ArrayList<>();
+        if (keys != null) {
+            for (Map<String, Object> key : keys) decoded.add(decodeKey(key));
+        }
+        return decoded;
+    }
+
+    private static SigningKey decodeKey(Map<String, Object> json) throws ParseException, JOSEException {
+        return new SigningKey(OctetKeyPair.parse(JSONObjectUtils.getJSONObject(json, "jwk")))
+                .activate(JSONObjectUtils.getLong(json, "notAfter"), JSONObjectUtils.getLong(json, "retireAt"));
+    }
+}
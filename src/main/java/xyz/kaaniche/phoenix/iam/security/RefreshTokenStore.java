@@ -0,0 +1,111 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Singleton;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Refresh token rotation state. Every refresh token belongs to a family started by an authorization code
+ * grant; a refresh token can be exchanged once, and presenting an already used one revokes its whole
+ * family, including the token that replaced it.
+ * <p>
+ * Used token ids are kept until their own expiration, revoked families until the last token they could
+ * have issued expires. Both live in {@link ExpiringIdSet}s bounded by {@code refresh.token.store.capacity},
+ * whose buckets are released by a sweep the {@link ExpiryService} runs once per bucket width.
+ * <p>
+ * The state is local to this node: behind a load balancer, a replay reaching another node than the first
+ * exchange isn't detected. Deployments with several nodes route refresh grants with session affinity on
+ * the token family, or accept that window.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RefreshTokenStore {
+
+    public enum Outcome {
+        /** first use: the caller may issue the next token of the family */
+        ROTATED,
+        /** the token was already used: the family is now revoked */
+        REPLAYED,
+        /** the family was revoked by an earlier replay */
+        REVOKED,
+        /** the store is at capacity and cannot track the token */
+        UNAVAILABLE
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(RefreshTokenStore.class.getName());
+
+    private static final long BUCKET_SECONDS = 60;
+    private static final long HORIZON = JwtManager.REFRESH_TOKEN_LIFETIME_SECONDS + JwtManager.CLOCK_SKEW_SECONDS;
+
+    @EJB
+    private ExpiryService expiryService;
+
+    private final Config config = ConfigProvider.getConfig();
+    private final long capacity = config.getOptionalValue("refresh.token.store.capacity", Long.class).orElse(1_000_000L);
+
+    private final ExpiringIdSet consumed = new ExpiringIdSet(BUCKET_SECONDS, HORIZON, capacity);
+    private final ExpiringIdSet revokedFamilies = new ExpiringIdSet(BUCKET_SECONDS, HORIZON, Math.max(1, capacity / 16));
+
+    private TimingWheel.Channel<String> sweep;
+
+    @PostConstruct
+    public void start() {
+        sweep = expiryService.channel("refresh.tokens", this::sweep);
+        sweep.schedule("sweep", Instant.now().getEpochSecond() + BUCKET_SECONDS);
+    }
+
+    public Outcome consume(String jti, String familyId, long expiresAt) {
+        return consume(jti, familyId, expiresAt, Instant.now().getEpochSecond());
+    }
+
+    synchronized Outcome consume(String jti, String familyId, long expiresAt, long now) {
+        UUID family = UUID.fromString(familyId);
+        if (revokedFamilies.containsAny(family.getMostSignificantBits(), family.getLeastSignificantBits())) {
+            return Outcome.REVOKED;
+        }
+
+        UUID id = UUID.fromString(jti);
+        switch (consumed.add(id.getMostSignificantBits(), id.getLeastSignificantBits(), expiresAt)) {
+            case ADDED:
+                return Outcome.ROTATED;
+            case PRESENT:
+                // the newest token of the family expires at the latest one lifetime from now
+                if (revokedFamilies.add(family.getMostSignificantBits(), family.getLeastSignificantBits(),
+                        now + JwtManager.REFRESH_TOKEN_LIFETIME_SECONDS) == ExpiringIdSet.Insertion.FULL) {
+                    LOGGER.severe("Unable to revoke refresh token family " + familyId + ": store is full");
+                }
+                LOGGER.warning("Refresh token replay detected, revoking family " + familyId);
+                return Outcome.REPLAYED;
+            default:
+                LOGGER.severe("Refresh token store is full (" + capacity + " entries)");
+                return Outcome.UNAVAILABLE;
+        }
+    }
+
+    private void sweep(List<String> keys) {
+        long now = Instant.now().getEpochSecond();
+        expire(now);
+        sweep.schedule(keys.get(0), now + BUCKET_SECONDS);
+    }
+
+    synchronized void expire(long now) {
+        // tokens are accepted up to CLOCK_SKEW_SECONDS past their expiration
+        consumed.expire(now - JwtManager.CLOCK_SKEW_SECONDS);
+        revokedFamilies.expire(now - JwtManager.CLOCK_SKEW_SECONDS);
+    }
+
+    public synchronized long size() {
+        return consumed.size();
+    }
+}
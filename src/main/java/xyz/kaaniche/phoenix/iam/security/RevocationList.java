@@ -0,0 +1,126 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Singleton;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Access and refresh tokens revoked before their expiration, by jti or by subject.
+ * <p>
+ * Revoked jti values sit behind a {@link BloomFilter}: for a token that was never revoked the check is a
+ * few bit tests and allocates nothing, and the exact set is only consulted when the filter answers maybe.
+ * A subject revocation rejects every token of that subject issued up to the revocation time.
+ * Entries are kept until the tokens they target have expired, then dropped by the {@link ExpiryService};
+ * the filter is rebuilt once the dropped ids outnumber the live ones.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RevocationList {
+
+    private static final Logger LOGGER = Logger.getLogger(RevocationList.class.getName());
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @EJB
+    private ExpiryService expiryService;
+
+    private final Config config = ConfigProvider.getConfig();
+    private final long jwtLifetimeDuration = config.getValue("jwt.lifetime.duration", Long.class);
+    // the longest a revoked token can still be presented: refresh tokens outlive access tokens
+    private final long retention = Math.max(jwtLifetimeDuration, JwtManager.REFRESH_TOKEN_LIFETIME_SECONDS) + JwtManager.CLOCK_SKEW_SECONDS;
+    private final long expectedEntries = config.getOptionalValue("revocation.expected.entries", Long.class).orElse(100_000L);
+
+    // jti -> expiration of the revoked token (epoch seconds)
+    private final ConcurrentHashMap<String, Long> revokedIds = new ConcurrentHashMap<>();
+    // subject -> tokens issued at or before this time are revoked (epoch seconds)
+    private final ConcurrentHashMap<String, Long> revokedSubjects = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    // ids dropped since the filter was last rebuilt, still answering maybe
+    private long staleIds;
+
+    private TimingWheel.Channel<String> idExpiry;
+    private TimingWheel.Channel<SubjectRevocation> subjectExpiry;
+
+    public RevocationList() {
+    }
+
+    RevocationList(TimingWheel wheel) {
+        idExpiry = wheel.channel(this::expireIds);
+        subjectExpiry = wheel.channel(this::expireSubjects);
+    }
+
+    @PostConstruct
+    public void start() {
+        idExpiry = expiryService.channel("revocation.ids", this::expireIds);
+        subjectExpiry = expiryService.channel("revocation.subjects", this::expireSubjects);
+    }
+
+    /**
+     * @param issuedAt token issue time (epoch seconds)
+     */
+    public boolean isRevoked(String jti, String subject, long issuedAt) {
+        if (jti != null && filter.mightContain(jti) && revokedIds.containsKey(jti)) {
+            return true;
+        }
+        if (revokedSubjects.isEmpty() || subject == null) {
+            return false;
+        }
+        Long revokedAt = revokedSubjects.get(subject);
+        return revokedAt != null && issuedAt <= revokedAt;
+    }
+
+    public void revokeToken(String jti) {
+        // the token can't outlive a token issued now
+        long expiresAt = Instant.now().getEpochSecond() + retention;
+        // the map first: a rebuild then either copies the id in its second pass, or is the filter read below
+        boolean added = revokedIds.putIfAbsent(jti, expiresAt) == null;
+        filter.put(jti);
+        // a token revoked again is already kept for its whole lifetime
+        if (added) {
+            idExpiry.schedule(jti, expiresAt);
+        }
+        LOGGER.info("Revoked token " + jti);
+    }
+
+    public void revokeSubject(String subject) {
+        long revokedAt = Instant.now().getEpochSecond();
+        revokedSubjects.merge(subject, revokedAt, Math::max);
+        subjectExpiry.schedule(new SubjectRevocation(subject, revokedAt), revokedAt + retention);
+        LOGGER.info("Revoked tokens of " + subject);
+    }
+
+    synchronized void expireIds(List<String> ids) {
+        ids.forEach(revokedIds::remove);
+        staleIds += ids.size();
+        if (staleIds <= revokedIds.size()) return;
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, 2L * revokedIds.size()), FALSE_POSITIVE_RATE);
+        revokedIds.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        // revocations made during the rebuild may have missed the new filter
+        revokedIds.keySet().forEach(rebuilt::put);
+        staleIds = 0;
+    }
+
+    private void expireSubjects(List<SubjectRevocation> revocations) {
+        // a later revocation of the same subject has its own timeout
+        revocations.forEach(r -> revokedSubjects.remove(r.subject(), r.revokedAt()));
+    }
+
+    public int size() {
+        return revokedIds.size() + revokedSubjects.size();
+    }
+
+    private record SubjectRevocation(String subject, long revokedAt) {
+    }
+}
@@ -0,0 +1,104 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.util.Arrays;
+
+/**
+ * Scope lists as found in requests, grants and tokens: scope tokens separated by whitespace. Scanned by hand,
+ * without regular expressions nor intermediate collections on the common paths.
+ * <p>
+ * The canonical form of a list has its distinct tokens in {@link String#compareTo} order, separated by a single
+ * space. Lists produced by this server are canonical, and canonicalizing them again costs a scan.
+ */
+public final class Scopes {
+
+    private Scopes() {
+    }
+
+    private static boolean isSeparator(char c) {
+        return c <= ' ';
+    }
+
+    /**
+     * @return the index of the first token character at or after {@code from}, {@code scopes.length()} if none
+     */
+    public static int tokenStart(String scopes, int from) {
+        int length = scopes.length();
+        while (from < length && isSeparator(scopes.charAt(from))) from++;
+        return from;
+    }
+
+    /**
+     * @return the index just past the token starting at {@code start}
+     */
+    public static int tokenEnd(String scopes, int start) {
+        int length = scopes.length();
+        while (start < length && !isSeparator(scopes.charAt(start))) start++;
+        return start;
+    }
+
+    /**
+     * @param scopes may be null
+     * @return the canonical form, the argument itself when already canonical
+     */
+    public static String canonical(String scopes) {
+        if (scopes == null) {
+            return "";
+        }
+        if (isCanonical(scopes)) {
+            return scopes;
+        }
+        int count = 0;
+        for (int start = tokenStart(scopes, 0); start < scopes.length(); start = tokenStart(scopes, tokenEnd(scopes, start))) {
+            count++;
+        }
+        String[] tokens = new String[count];
+        int i = 0;
+        for (int start = tokenStart(scopes, 0); start < scopes.length(); ) {
+            int end = tokenEnd(scopes, start);
+            tokens[i++] = scopes.substring(start, end);
+            start = tokenStart(scopes, end);
+        }
+        Arrays.sort(tokens);
+        StringBuilder sb = new StringBuilder(scopes.length());
+        for (i = 0; i < count; i++) {
+            if (i > 0 && tokens[i].equals(tokens[i - 1])) continue;
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(tokens[i]);
+        }
+        return sb.toString();
+    }
+
+    static boolean isCanonical(String scopes) {
+        int length = scopes.length();
+        int previous = -1, previousEnd = -1;
+        int start = 0;
+        while (start < length) {
+            int end = tokenEnd(scopes, start);
+            if (end == start) {
+                // leading or repeated separator
+                return false;
+            }
+            if (previous >= 0 && compare(scopes, previous, previousEnd, start, end) >= 0) {
+                return false;
+            }
+            if (end < length && (scopes.charAt(end) != ' ' || end + 1 == length)) {
+                // other separator than a single space, or trailing one
+                return false;
+            }
+            previous = start;
+            previousEnd = end;
+            start = end + 1;
+        }
+        return true;
+    }
+
+    // String#compareTo on two regions of the same string
+    private static int compare(String s, int aStart, int aEnd, int bStart, int bEnd) {
+        int n = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < n; i++) {
+            int d = s.charAt(aStart + i) - s.charAt(bStart + i);
+            if (d != 0) return d;
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+}
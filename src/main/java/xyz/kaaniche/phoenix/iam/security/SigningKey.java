@@ -0,0 +1,99 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+
+import java.text.ParseException;
+
+/**
+ * An Ed25519 key pair together with its signing and verification deadlines (epoch seconds).
+ * A key that has not been activated yet has both deadlines set to zero.
+ * <p>
+ * The signer, verifier and protected header are built once when the key enters the ring and are shared
+ * by all request threads: the underlying Ed25519 primitives are immutable, and the header is parsed back
+ * from its Base64URL form so that its serialization is cached instead of recomputed per token.
+ */
+final class SigningKey {
+    private final OctetKeyPair keyPair;
+    private final OctetKeyPair publicKey;
+    private final JWSSigner signer;
+    private final JWSVerifier verifier;
+    private final JWSHeader header;
+    private final long notAfter;
+    private final long retireAt;
+
+    SigningKey(OctetKeyPair keyPair) throws JOSEException {
+        this.keyPair = keyPair;
+        this.publicKey = keyPair.toPublicJWK();
+        this.signer = new Ed25519Signer(keyPair);
+        this.verifier = new Ed25519Verifier(publicKey);
+        try {
+            this.header = JWSHeader.parse(new JWSHeader.Builder(JWSAlgorithm.EdDSA)
+                    .keyID(keyPair.getKeyID())
+                    .type(JOSEObjectType.JWT)
+                    .build()
+                    .toBase64URL());
+        } catch (ParseException e) {
+            throw new JOSEException(e.getMessage(), e);
+        }
+        this.notAfter = 0L;
+        this.retireAt = 0L;
+    }
+
+    private SigningKey(SigningKey key, long notAfter, long retireAt) {
+        this.keyPair = key.keyPair;
+        this.publicKey = key.publicKey;
+        this.signer = key.signer;
+        this.verifier = key.verifier;
+        this.header = key.header;
+        this.notAfter = notAfter;
+        this.retireAt = retireAt;
+    }
+
+    /**
+     * @param notAfter last second this key may sign tokens
+     * @param retireAt last second this key may verify tokens
+     */
+    SigningKey activate(long notAfter, long retireAt) {
+        return new SigningKey(this, notAfter, retireAt);
+    }
+
+    String kid() {
+        return keyPair.getKeyID();
+    }
+
+    OctetKeyPair keyPair() {
+        return keyPair;
+    }
+
+    OctetKeyPair publicKey() {
+        return publicKey;
+    }
+
+    JWSSigner signer() {
+        return signer;
+    }
+
+    JWSVerifier verifier() {
+        return verifier;
+    }
+
+    JWSHeader header() {
+        return header;
+    }
+
+    long notAfter() {
+        return notAfter;
+    }
+
+    long retireAt() {
+        return retireAt;
+    }
+}
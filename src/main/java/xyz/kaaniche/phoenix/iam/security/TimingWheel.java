@@ -0,0 +1,215 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical hashed timing wheel: deadlines are hashed by tick into a ring of slots per level, each slot
+ * holding an intrusive doubly linked list, so scheduling and cancelling are O(1) whatever the number of
+ * pending timeouts. A level's slot spans one revolution of the level below it; a timeout too far away for
+ * the finest level waits in a coarser one and cascades down when the wheel reaches its slot, so advancing
+ * only visits the slots of the elapsed ticks plus one coarse slot per revolution. Timeouts beyond the
+ * coarsest level stay in its slots until the revolution that reaches their deadline.
+ * <p>
+ * Timeouts are scheduled on a {@link Channel}. Keys expiring during one {@link #advance(long)} are
+ * handed to their channel's listener in a single batch, outside of the wheel lock, so a listener may
+ * schedule again.
+ */
+public final class TimingWheel {
+
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+    private final long tickSeconds;
+    // levels[l][slot], slot spans 2^(l * bits) ticks
+    private final Timeout[][] levels;
+    private final int bits;
+    private final int mask;
+    private long lastTick;
+    private int size;
+
+    /**
+     * @param tickSeconds resolution of the wheel
+     * @param slotCount   number of slots per level, rounded up to a power of two
+     * @param levelCount  number of levels, the wheel covering {@code slotCount^levelCount} ticks
+     * @param now         current time (epoch seconds)
+     */
+    public TimingWheel(long tickSeconds, int slotCount, int levelCount, long now) {
+        int slots = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        this.tickSeconds = tickSeconds;
+        this.levels = new Timeout[Math.max(1, levelCount)][slots];
+        this.bits = Integer.numberOfTrailingZeros(slots);
+        this.mask = slots - 1;
+        this.lastTick = now / tickSeconds;
+    }
+
+    public <K> Channel<K> channel(Consumer<List<K>> listener) {
+        return new Channel<>(listener);
+    }
+
+    /**
+     * Expires every timeout whose deadline is at or before {@code now} and notifies the listeners.
+     */
+    public void advance(long now) {
+        Map<Channel<?>, List<Object>> expired = new IdentityHashMap<>();
+        synchronized (this) {
+            long tick = now / tickSeconds;
+            if (size == 0) lastTick = Math.max(lastTick, tick);
+            while (lastTick < tick) {
+                long t = ++lastTick;
+                // coarse slots starting at this tick cascade down, coarsest first
+                for (int level = levels.length - 1; level > 0; level--) {
+                    if ((t & ((1L << (level * bits)) - 1)) == 0) {
+                        Timeout timeout = detach(level, (int) ((t >>> (level * bits)) & mask));
+                        while (timeout != null) {
+                            Timeout next = timeout.next;
+                            place(timeout, expired);
+                            timeout = next;
+                        }
+                    }
+                }
+                Timeout timeout = detach(0, (int) (t & mask));
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    place(timeout, expired);
+                    timeout = next;
+                }
+            }
+        }
+        for (Map.Entry<Channel<?>, List<Object>> batch : expired.entrySet()) {
+            try {
+                batch.getKey().fire(batch.getValue());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Expiry listener failed", e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized Timeout schedule(Channel<?> channel, Object key, long deadline) {
+        Timeout timeout = new Timeout(channel, key, deadline);
+        link(timeout, slotOf(timeout));
+        size++;
+        return timeout;
+    }
+
+    private synchronized boolean cancel(Channel<?> channel, Timeout timeout) {
+        if (timeout.channel != channel || timeout.level < 0) return false;
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves a detached timeout to the level matching its remaining delay, or to the expired batch.
+     */
+    private void place(Timeout timeout, Map<Channel<?>, List<Object>> expired) {
+        timeout.prev = timeout.next = null;
+        timeout.level = -1;
+        if (timeout.deadline / tickSeconds <= lastTick) {
+            size--;
+            expired.computeIfAbsent(timeout.channel, c -> new ArrayList<>()).add(timeout.key);
+        } else {
+            link(timeout, slotOf(timeout));
+        }
+    }
+
+    /**
+     * @return the level in the high bits, the slot in the low bits
+     */
+    private long slotOf(Timeout timeout) {
+        // deadlines already passed fire on the next tick
+        long tick = Math.max(timeout.deadline / tickSeconds, lastTick + 1);
+        int level = 0;
+        while (level < levels.length - 1 && tick - lastTick >= 1L << ((level + 1) * bits)) {
+            level++;
+        }
+        return ((long) level << 32) | ((tick >>> (level * bits)) & mask);
+    }
+
+    private void link(Timeout timeout, long position) {
+        Timeout[] slots = levels[(int) (position >>> 32)];
+        timeout.level = (int) (position >>> 32);
+        timeout.slot = (int) position;
+        timeout.next = slots[timeout.slot];
+        if (timeout.next != null) timeout.next.prev = timeout;
+        slots[timeout.slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            levels[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+        timeout.level = -1;
+    }
+
+    private Timeout detach(int level, int slot) {
+        Timeout head = levels[level][slot];
+        levels[level][slot] = null;
+        return head;
+    }
+
+    /**
+     * A group of timeouts sharing one expiry listener.
+     */
+    public final class Channel<K> {
+        private final Consumer<List<K>> listener;
+
+        private Channel(Consumer<List<K>> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param deadline expiration time (epoch seconds)
+         */
+        public Timeout schedule(K key, long deadline) {
+            return TimingWheel.this.schedule(this, key, deadline);
+        }
+
+        /**
+         * @return false when the timeout already expired or was cancelled
+         */
+        public boolean cancel(Timeout timeout) {
+            return TimingWheel.this.cancel(this, timeout);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void fire(List<Object> keys) {
+            listener.accept((List<K>) keys);
+        }
+    }
+
+    /**
+     * Handle of a scheduled key, guarded by the wheel lock.
+     */
+    public static final class Timeout {
+        private final Channel<?> channel;
+        private final Object key;
+        private final long deadline;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(Channel<?> channel, Object key, long deadline) {
+            this.channel = channel;
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.ws.rs.core.SecurityContext;
+import xyz.kaaniche.phoenix.iam.controllers.Role;
+
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Security context of a request authenticated by an access token.
+ * When the token carries the compact roles claim, role checks are mask tests and {@link AuthorizationFilter}
+ * reads the mask directly.
+ */
+final class TokenSecurityContext implements SecurityContext {
+    private final Principal principal;
+    private final Set<String> roles;
+    private final Long rolesMask;
+    private final boolean secure;
+    private final String authenticationScheme;
+
+    TokenSecurityContext(Principal principal, Set<String> roles, Long rolesMask, boolean secure,
+                         String authenticationScheme) {
+        this.principal = principal;
+        this.roles = roles;
+        this.rolesMask = rolesMask;
+        this.secure = secure;
+        this.authenticationScheme = authenticationScheme;
+    }
+
+    /**
+     * @return the raw {@code Role} bitmask, null when the token only carries role names
+     */
+    Long rolesMask() {
+        return rolesMask;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        // compact claim: a single mask test instead of a set lookup
+        return rolesMask != null ? Role.isGranted(role, rolesMask) : roles.contains(role);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return secure;
+    }
+
+    @Override
+    public String getAuthenticationScheme() {
+        return authenticationScheme;
+    }
+}
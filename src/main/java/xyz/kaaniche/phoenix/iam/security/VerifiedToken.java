@@ -0,0 +1,19 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.util.Set;
+
+/**
+ * The outcome of a successful access token validation: what the request filters need,
+ * without the parsed JWT.
+ *
+ * @param subject   the token subject
+ * @param roles     the role names carried by the token
+ * @param rolesMask the raw {@code Role} bitmask when the token carries the compact roles claim, else null
+ * @param expiresAt token expiration (epoch seconds)
+ * @param kid       id of the key that signed the token
+ * @param jti       the token id
+ * @param issuedAt  token issue time (epoch seconds), 0 when absent
+ */
+public record VerifiedToken(String subject, Set<String> roles, Long rolesMask, long expiresAt, String kid,
+                            String jti, long issuedAt) {
+}
@@ -0,0 +1,91 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of already validated access tokens, keyed by the SHA-256 digest of the token
+ * so that raw bearer tokens are never kept in memory.
+ * Entries are dropped once expired or when their signing key leaves the key ring.
+ */
+public final class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private record Digest(long a, long b, long c, long d) {}
+
+    private final ConcurrentHashMap<Digest, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    VerifiedToken get(String token, long now) {
+        Digest digest = digest(token);
+        VerifiedToken cached = entries.get(digest);
+        if (cached != null && cached.expiresAt() < now) {
+            entries.remove(digest, cached);
+            cached = null;
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    void put(String token, VerifiedToken verified, long now) {
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(v -> v.expiresAt() < now);
+        }
+        if (entries.size() >= maxSize) {
+            // still full of live tokens: drop an arbitrary slice rather than scanning on every insert
+            Iterator<VerifiedToken> it = entries.values().iterator();
+            for (int i = Math.max(1, maxSize / 8); i > 0 && it.hasNext(); i--) {
+                it.next();
+                it.remove();
+            }
+        }
+        entries.put(digest(token), verified);
+    }
+
+    void evictKid(String kid) {
+        entries.values().removeIf(v -> v.kid().equals(kid));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static Digest digest(String token) {
+        ByteBuffer bb = ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new Digest(bb.getLong(), bb.getLong(), bb.getLong(), bb.getLong());
+    }
+}
@@ -0,0 +1,42 @@
+package xyz.kaaniche.phoenix.core.controllers;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EntityCacheTest {
+
+    @Test
+    public void testSnapshots() {
+        EntityCache<Short, Tenant> cache = new EntityCache<>(Tenant.class, 2, 60);
+        Tenant tenant = new Tenant();
+        tenant.setId((short) 1);
+        tenant.setName("api");
+
+        assertNull(cache.get((short) 1, 1000));
+        cache.put((short) 1, tenant, 1000);
+        // the cache keeps a copy: later changes to the entity don't leak in
+        tenant.setName("erp");
+        Tenant hit = cache.get((short) 1, 1000);
+        assertNotSame(tenant, hit);
+        assertEquals((short) 1, hit.getId());
+        assertEquals("api", hit.getName());
+        // and hands out copies
+        hit.setName("crm");
+        assertEquals("api", cache.get((short) 1, 1000).getName());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+
+        // expiry, invalidation and bound
+        assertNull(cache.get((short) 1, 1060));
+        cache.put((short) 1, tenant, 1000);
+        cache.invalidate((short) 1);
+        assertNull(cache.get((short) 1, 1000));
+        for (short id = 1; id <= 3; id++) {
+            cache.put(id, tenant, 1000);
+        }
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,86 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GrantIndexTest {
+
+    @Test
+    public void testAllowedScopes() {
+        ScopeRegistry registry = new ScopeRegistry();
+        GrantIndex index = new GrantIndex(registry);
+        index.put((short) 1, 7L, "resource:write resource:read  profile");
+        index.put((short) 2, 7L, "profile");
+        ScopeDictionary scopes = registry.dictionary((short) 1);
+
+        assertTrue(index.contains((short) 1, 7L));
+        assertFalse(index.contains((short) 1, 8L));
+        assertNull(index.allowedScopes((short) 1, 8L, scopes.encode("profile", false)));
+
+        // rendered in canonical order
+        assertEquals("profile resource:read",
+                scopes.decode(index.allowedScopes((short) 1, 7L, scopes.encode("resource:read openid profile", false))));
+        assertEquals("", scopes.decode(index.allowedScopes((short) 1, 7L, scopes.encode("openid", false))));
+        assertEquals("", scopes.decode(index.allowedScopes((short) 1, 7L, scopes.encode(null, false))));
+        // dictionaries are per tenant
+        assertEquals(-1, registry.dictionary((short) 2).find("resource:read"));
+
+        index.put((short) 1, 7L, "resource:read");
+        assertEquals("resource:read",
+                scopes.decode(index.allowedScopes((short) 1, 7L, scopes.encode("profile resource:read", false))));
+        index.remove((short) 1, 7L);
+        assertNull(index.allowedScopes((short) 1, 7L, scopes.encode("resource:read", false)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testRegisteredScopes() {
+        Tenant tenant = new Tenant();
+        tenant.setId((short) 3);
+        tenant.setName("api");
+        tenant.setRequiredScopes("profile resource:read");
+        ScopeRegistry registry = new ScopeRegistry();
+        ScopeDictionary scopes = registry.dictionary(new TenantSnapshot(tenant));
+
+        // names sent by clients are never assigned
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ScopeDictionary.isEmpty(scopes.encode("junk" + i, false)));
+        }
+        assertEquals("profile", scopes.decode(ScopeDictionary.and(
+                scopes.encode("profile junk1", false), scopes.encode("resource:write profile", false))));
+
+        // stored grants register theirs
+        new GrantIndex(registry).put((short) 3, 7L, "resource:write");
+        assertEquals("resource:write", scopes.decode(scopes.encode("resource:write", false)));
+    }
+
+    @Test
+    public void testWideDictionary() {
+        ScopeDictionary dictionary = new ScopeDictionary(130);
+        StringJoiner all = new StringJoiner(" ");
+        for (int i = 0; i < 130; i++) {
+            all.add("s" + (char) ('a' + i % 26) + i);
+        }
+        long[] bits = dictionary.encode(all.toString(), true);
+        assertEquals(3, bits.length);
+        assertEquals(130, dictionary.decode(bits).split(" ").length);
+
+        long[] requested = dictionary.encode("sz129 sd3\tunknown", false);
+        assertEquals(-1, dictionary.find("unknown"));
+        assertEquals("sd3 sz129", dictionary.decode(ScopeDictionary.and(bits, requested)));
+        assertArrayEquals(new long[0], ScopeDictionary.and(dictionary.encode("sa0", false), dictionary.encode("sm64", false)));
+        assertTrue(ScopeDictionary.isEmpty(new long[2]));
+
+        // full: unknown names are left out
+        assertEquals(-1, dictionary.idOf("more"));
+        assertArrayEquals(new long[0], dictionary.encode("more", true));
+    }
+}
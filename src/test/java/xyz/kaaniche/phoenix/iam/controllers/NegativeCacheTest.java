@@ -0,0 +1,33 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void testMisses() {
+        NegativeCache cache = new NegativeCache();
+        cache.recordMiss(NegativeCache.Kind.USERNAME, "mallory", cache.stamp(), 1000);
+
+        assertTrue(cache.isMissing(NegativeCache.Kind.USERNAME, "mallory", 1029));
+        // kinds don't share names
+        assertFalse(cache.isMissing(NegativeCache.Kind.TENANT, "mallory", 1029));
+        // expired entries are dropped on lookup
+        assertFalse(cache.isMissing(NegativeCache.Kind.USERNAME, "mallory", 1030));
+        assertEquals(0, cache.size());
+
+        cache.recordMiss(NegativeCache.Kind.TENANT, "erp", cache.stamp(), 1000);
+        cache.invalidate(NegativeCache.Kind.TENANT, "erp");
+        assertFalse(cache.isMissing(NegativeCache.Kind.TENANT, "erp", 1000));
+
+        // a lookup that missed before the name was created, recording after the invalidation
+        long stamp = cache.stamp();
+        cache.invalidate(NegativeCache.Kind.USERNAME, "dave");
+        cache.recordMiss(NegativeCache.Kind.USERNAME, "dave", stamp, 1000);
+        assertFalse(cache.isMissing(NegativeCache.Kind.USERNAME, "dave", 1000));
+    }
+}
@@ -0,0 +1,52 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entities.Grant;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionMatrixTest {
+
+    @Test
+    public void testMatrix() {
+        PermissionMatrix matrix = new PermissionMatrix();
+        matrix.load(ConfigProvider.getConfig());
+        long surfer = Role.byId("Surfer").getValue();
+        long moderator = Role.byId("Moderator").getValue();
+        long administrator = Role.byId("Administrator").getValue();
+        long root = Role.ROOT.getValue();
+
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.SAVE, null, administrator | surfer));
+        assertFalse(matrix.isAllowed(Identity.class, PermissionMatrix.Action.SAVE, null, moderator));
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.EDIT, 7L, moderator));
+        assertFalse(matrix.isAllowed(Identity.class, PermissionMatrix.Action.EDIT, 7L, surfer));
+        // the per-id entry overrides the type-wide one
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.EDIT, 42L, surfer));
+        assertFalse(matrix.isAllowed(Identity.class, PermissionMatrix.Action.EDIT, 42L, moderator));
+
+        // unlisted actions and types are reserved to root
+        assertFalse(matrix.isAllowed(Identity.class, PermissionMatrix.Action.DELETE, 7L, administrator));
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.DELETE, 7L, root));
+        assertFalse(matrix.isAllowed(Grant.class, PermissionMatrix.Action.SAVE, null, administrator));
+        assertTrue(matrix.isAllowed(Grant.class, PermissionMatrix.Action.SAVE, null, root));
+
+        // type-wide read, narrowed for one identity
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.READ, null, surfer));
+        assertTrue(matrix.isAllowed(Identity.class, PermissionMatrix.Action.READ, 7L, surfer));
+        assertFalse(matrix.isAllowed(Identity.class, PermissionMatrix.Action.READ, 1L, surfer));
+        assertFalse(matrix.isAllowed(Tenant.class, PermissionMatrix.Action.READ, null, administrator));
+
+        // per-id entries can't be checked set-based: bulk is then reserved to root
+        assertFalse(matrix.isAllowedInBulk(Identity.class, PermissionMatrix.Action.EDIT, moderator));
+        assertTrue(matrix.isAllowedInBulk(Identity.class, PermissionMatrix.Action.EDIT, root));
+        assertTrue(matrix.isAllowedInBulk(Tenant.class, PermissionMatrix.Action.DELETE, Role.GUEST.getValue()));
+        assertFalse(matrix.isAllowedInBulk(Grant.class, PermissionMatrix.Action.DELETE, administrator));
+
+        assertTrue(matrix.isAllowed(Tenant.class, PermissionMatrix.Action.DELETE, 1L, Role.GUEST.getValue()));
+        assertFalse(matrix.isAllowed(Tenant.class, PermissionMatrix.Action.DELETE, 1L, surfer));
+    }
+}
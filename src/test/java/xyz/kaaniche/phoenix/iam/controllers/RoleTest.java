@@ -0,0 +1,31 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RoleTest {
+
+    @Test
+    public void testNamesOf() {
+        long surfer = Role.byId("Surfer").getValue();
+        long administrator = Role.byId("Administrator").getValue();
+
+        assertArrayEquals(new String[]{"guest"}, Role.namesOf(0L));
+        assertArrayEquals(new String[]{"Surfer", "Administrator"}, Role.namesOf(surfer | administrator));
+        assertEquals(Set.of("Surfer", "Administrator"), Role.setOf(surfer | administrator));
+        // no "root" unless the mask is full, unnamed bits are skipped
+        assertArrayEquals(new String[]{"Surfer"}, Role.namesOf(surfer | (1L << 40)));
+        assertEquals(Set.of("root", "Surfer", "Moderator", "Administrator"), Role.setOf(Role.ROOT.getValue()));
+        assertThrows(IllegalArgumentException.class, () -> Role.namesOf(-2L));
+
+        // interned per mask
+        assertSame(Role.namesOf(surfer | administrator), Role.namesOf(surfer | administrator));
+        assertSame(Role.setOf(surfer), Role.setOf(surfer));
+    }
+}
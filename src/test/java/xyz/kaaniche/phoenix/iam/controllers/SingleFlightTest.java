@@ -0,0 +1,93 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testCoalescing() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>(10_000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+        Object result = new Object();
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> flight.load("api", k -> {
+                    queries.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return result;
+                })));
+            }
+            // wait for every caller to join the flight before letting the query complete
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (flight.getCollapsed() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<Object> future : futures) {
+                assertSame(result, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+        assertEquals(1, flight.getLoads());
+        assertEquals(callers - 1, flight.getCollapsed());
+
+        // nothing is kept once the flight landed
+        assertSame(result, flight.load("api", k -> result));
+        assertEquals(2, flight.getLoads());
+        assertThrows(IllegalStateException.class, () -> flight.load("api", k -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+    @Test
+    public void testBoundedWait() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(50);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> flight.load("api", k -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "slow";
+            }));
+            while (flight.getLoads() == 0) {
+                Thread.sleep(1);
+            }
+            // a stuck flight doesn't hold the next caller, who queries on its own
+            assertEquals("own", flight.load("api", k -> "own"));
+            assertEquals(1, flight.getTimeouts());
+            assertEquals(0, flight.getCollapsed());
+            release.countDown();
+            assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, flight.getLoads());
+    }
+}
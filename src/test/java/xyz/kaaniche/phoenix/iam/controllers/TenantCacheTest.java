@@ -0,0 +1,55 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TenantCacheTest {
+
+    @Test
+    public void testReadThrough() {
+        Tenant tenant = new Tenant();
+        tenant.setId((short) 1);
+        tenant.setName("api");
+        tenant.setRedirectUri("https://api.example/callback");
+        AtomicInteger queries = new AtomicInteger();
+        Function<String, TenantSnapshot> byName = name -> {
+            queries.incrementAndGet();
+            return name.equals(tenant.getName()) ? new TenantSnapshot(tenant) : null;
+        };
+
+        TenantCache cache = new TenantCache();
+        TenantSnapshot snapshot = cache.byName("api", byName);
+        assertSame(snapshot, cache.byName("api", byName));
+        assertSame(snapshot, cache.byId((short) 1, id -> { throw new AssertionError(); }));
+        assertEquals(1, queries.get());
+
+        // snapshots are detached from the entity
+        tenant.setRedirectUri("https://evil.example");
+        assertEquals("https://api.example/callback", cache.byName("api", byName).getRedirectUri());
+
+        // renamed tenant: both the old and the new name are dropped
+        tenant.setName("erp");
+        cache.invalidate(tenant);
+        assertNull(cache.byName("api", byName));
+        assertEquals("https://evil.example", cache.byName("erp", byName).getRedirectUri());
+        assertEquals(3, queries.get());
+
+        // a load overlapping a committed update may have read the old row: served, not cached
+        cache.invalidate(tenant);
+        TenantSnapshot stale = cache.byName("erp", name -> {
+            TenantSnapshot read = byName.apply(name);
+            cache.invalidate((short) 1, "erp");
+            return read;
+        });
+        assertEquals("erp", stale.getName());
+        cache.byName("erp", byName);
+        assertEquals(5, queries.get());
+    }
+}
@@ -0,0 +1,59 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import jakarta.annotation.security.DenyAll;
+import jakarta.annotation.security.PermitAll;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.security.enterprise.CallerPrincipal;
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.controllers.Role;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessRuleTest {
+
+    @RolesAllowed({"Moderator", " Administrator "})
+    static class Resource {
+        public void inherited() {}
+
+        @PermitAll
+        public void open() {}
+
+        @DenyAll
+        public void closed() {}
+
+        @RolesAllowed("root")
+        public void rootOnly() {}
+    }
+
+    private static TokenSecurityContext caller(Long mask, String... roles) {
+        return new TokenSecurityContext(new CallerPrincipal("alice"), Set.of(roles), mask, true, "Bearer");
+    }
+
+    @Test
+    public void testRules() throws Exception {
+        assertSame(AccessRule.PERMIT, AccessRule.of(Resource.class.getMethod("open"), Resource.class));
+        assertSame(AccessRule.DENY, AccessRule.of(Resource.class.getMethod("closed"), Resource.class));
+        assertSame(AccessRule.PERMIT, AccessRule.of(Object.class.getMethod("hashCode"), Object.class));
+
+        AccessRule inherited = AccessRule.of(Resource.class.getMethod("inherited"), Resource.class);
+        long moderator = Role.byId("Moderator").getValue();
+        long surfer = Role.byId("Surfer").getValue();
+        assertTrue(inherited.permits(caller(moderator | surfer)));
+        assertTrue(inherited.permits(caller(Role.byId("Administrator").getValue())));
+        assertFalse(inherited.permits(caller(surfer)));
+        assertFalse(inherited.permits(caller(0L)));
+        assertTrue(inherited.permits(caller(Long.MAX_VALUE)));
+        // tokens without the compact claim are checked by name
+        assertTrue(inherited.permits(caller(null, "Moderator")));
+        assertFalse(inherited.permits(caller(null, "Surfer")));
+        assertFalse(inherited.permits(null));
+
+        AccessRule rootOnly = AccessRule.of(Resource.class.getMethod("rootOnly"), Resource.class);
+        assertTrue(rootOnly.permits(caller(Long.MAX_VALUE)));
+        assertFalse(rootOnly.permits(caller(moderator)));
+    }
+}
@@ -0,0 +1,78 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashingPoolTest {
+
+    @Test
+    public void testAdmission() throws Exception {
+        HashingPool pool = new HashingPool(1, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one running, one queued
+            Future<Boolean> running = callers.submit(() -> pool.call(() -> release.await(10, TimeUnit.SECONDS)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pool.getExecuted() == 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            Future<Boolean> queued = callers.submit(() -> pool.call(() -> true));
+            while (pool.getQueueDepth() == 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            assertEquals(1, pool.getQueueDepth());
+
+            // the queue is full: fail fast
+            HashingPool.SaturatedException full = assertThrows(HashingPool.SaturatedException.class, () -> pool.call(() -> true));
+            assertEquals(1, full.getRetryAfterSeconds());
+
+            // the queued hash gives up at the max wait, while the running one still holds the worker
+            Exception stale = assertThrows(Exception.class, () -> queued.get(10, TimeUnit.SECONDS));
+            assertTrue(stale.getCause() instanceof HashingPool.SaturatedException);
+            assertEquals(0, pool.getQueueDepth());
+            assertEquals(1, release.getCount());
+            release.countDown();
+            assertTrue(running.get(10, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(2, pool.getRejected());
+        assertTrue(pool.getMaxWaitMillis() >= 100);
+        assertTrue(pool.call(() -> true));
+    }
+
+    @Test
+    public void testInterruptedWhileQueued() throws Exception {
+        HashingPool pool = new HashingPool(1, 1, 10_000);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        AtomicBoolean ran = new AtomicBoolean();
+        try {
+            Future<Boolean> running = callers.submit(() -> pool.call(() -> release.await(10, TimeUnit.SECONDS)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pool.getExecuted() == 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            Future<Boolean> queued = callers.submit(() -> pool.call(() -> ran.getAndSet(true)));
+            while (pool.getQueueDepth() == 0 && System.nanoTime() < deadline) Thread.sleep(1);
+
+            // the interrupted caller gives its hash up: it leaves the queue and never runs
+            queued.cancel(true);
+            while (pool.getQueueDepth() > 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            assertEquals(0, pool.getQueueDepth());
+            release.countDown();
+            assertTrue(running.get(10, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+        assertTrue(pool.call(() -> true));
+        assertFalse(ran.get());
+        assertEquals(2, pool.getExecuted());
+    }
+}
@@ -1,18 +1,44 @@
 package xyz.kaaniche.phoenix.iam.security;
 
 import com.google.crypto.tink.subtle.XChaCha20Poly1305;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import jakarta.ejb.EJBException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.kaaniche.phoenix.iam.controllers.Role;
 
 import javax.crypto.KeyGenerator;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.Set;
+import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JwtManagerTest {
+    private static final Logger LOGGER = Logger.getLogger(JwtManagerTest.class.getName());
     private static JwtManager manager;
 
     @BeforeAll
@@ -35,6 +61,220 @@ public class JwtManagerTest {
         assertEquals(Long.MAX_VALUE,sum);
     }
 
+    @Test
+    public void testKeyRotation() throws Exception {
+        JwtManager rotating = new JwtManager();
+        rotating.start();
+        String token = rotating.generateAccessToken("api", "alice", "resource.read", new String[]{"surfer"});
+        String kid = SignedJWT.parse(token).getHeader().getKeyID();
+
+        long now = Instant.now().getEpochSecond();
+        // past the signing lifetime: a standby key takes over, the old one still verifies
+        rotating.rotate(now + 10800 + 1);
+        String rotated = rotating.generateAccessToken("api", "alice", "resource.read", new String[]{"surfer"});
+        assertNotEquals(kid, SignedJWT.parse(rotated).getHeader().getKeyID());
+        assertTrue(rotating.validateAccessToken(token).isPresent());
+
+        // past the verification window: the old key leaves the ring
+        rotating.rotate(now + 10800 + 3 * 3600 + 1020 + 3600);
+        assertTrue(rotating.validateAccessToken(token).isEmpty());
+    }
+
+    @Test
+    public void testPersistedKeyRing(@TempDir Path directory) throws Exception {
+        byte[] secret = KeyGenerator.getInstance("ChaCha20").generateKey().getEncoded();
+        Path file = directory.resolve("keyring");
+        JwtManager first = new JwtManager(new KeyRingStore(file, secret));
+        first.start();
+        String token = first.generateAccessToken("api", "alice", "resource.read", new String[]{"surfer"});
+        String kid = SignedJWT.parse(token).getHeader().getKeyID();
+
+        // keys are encrypted at rest
+        String stored = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertFalse(stored.contains(kid));
+
+        // another node (or a restart) signs with the same key and verifies the first node's tokens
+        JwtManager second = new JwtManager(new KeyRingStore(file, secret));
+        second.start();
+        assertTrue(second.validateAccessToken(token).isPresent());
+        String other = second.generateAccessToken("api", "bob", "resource.read", new String[]{"surfer"});
+        assertEquals(kid, SignedJWT.parse(other).getHeader().getKeyID());
+
+        // a rotation by the second node is picked up by the first on an unknown kid
+        long now = Instant.now().getEpochSecond();
+        second.rotate(now + 10800 + 1);
+        String rotated = second.generateAccessToken("api", "bob", "resource.read", new String[]{"surfer"});
+        assertNotEquals(kid, SignedJWT.parse(rotated).getHeader().getKeyID());
+        assertTrue(first.validateAccessToken(rotated).isPresent());
+        first.rotate(now + 10800 + 2);
+        assertEquals(SignedJWT.parse(rotated).getHeader().getKeyID(), first.activeKey().kid());
+
+        JwtManager wrongSecret = new JwtManager(new KeyRingStore(file, new byte[32]));
+        assertThrows(EJBException.class, wrongSecret::start);
+    }
+
+    @Test
+    public void testJwksDocument() throws Exception {
+        JwtManager publishing = new JwtManager();
+        publishing.start();
+        String kid = publishing.activeKey().kid();
+        JwksDocument jwks = publishing.getJwks();
+        JWKSet keySet = JWKSet.parse(new String(jwks.keySet().body(), StandardCharsets.UTF_8));
+        assertEquals(1, keySet.getKeys().size());
+        assertNotNull(keySet.getKeyByKeyId(kid));
+        assertFalse(keySet.getKeyByKeyId(kid).isPrivate());
+        assertNotNull(jwks.key(kid));
+        assertNull(jwks.key("unknown"));
+
+        long now = Instant.now().getEpochSecond();
+        assertTrue(jwks.maxAge(now) > 0 && jwks.maxAge(now) <= 10800);
+        // no change, same document
+        publishing.rotate(now + 1);
+        assertSame(jwks, publishing.getJwks());
+
+        // the next key is announced ahead of the rotation, and signs once promoted
+        assertTrue(jwks.maxAge(now) <= 10800 - 900);
+        publishing.rotate(now + 10800 - 900);
+        JwksDocument announced = publishing.getJwks();
+        assertEquals(2, JWKSet.parse(new String(announced.keySet().body(), StandardCharsets.UTF_8)).getKeys().size());
+        assertEquals(kid, publishing.activeKey().kid());
+
+        publishing.rotate(now + 10800 + 1);
+        assertNotNull(announced.key(publishing.activeKey().kid()));
+        JwksDocument rotated = publishing.getJwks();
+        assertNotEquals(jwks.keySet().etag(), rotated.keySet().etag());
+        assertEquals(2, JWKSet.parse(new String(rotated.keySet().body(), StandardCharsets.UTF_8)).getKeys().size());
+        assertEquals(jwks.key(kid).etag(), rotated.key(kid).etag());
+    }
+
+    @Test
+    public void testVerifiedTokenCache() {
+        JwtManager cached = new JwtManager();
+        cached.start();
+        String token = cached.generateAccessToken("api", "bob", "resource.read", new String[]{"surfer"});
+        VerifiedTokenCache cache = cached.getVerifiedTokenCache();
+
+        assertEquals("bob", cached.authenticateAccessToken(token).orElseThrow().subject());
+        assertEquals(Set.of("surfer"), cached.authenticateAccessToken(token).orElseThrow().roles());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // once the signing key leaves the ring the cached entry is no longer served
+        long now = Instant.now().getEpochSecond();
+        cached.rotate(now + 10800 + 1);
+        cached.rotate(now + 10800 + 3 * 3600 + 1020 + 3600);
+        assertTrue(cached.authenticateAccessToken(token).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testTemplateSerializerCompatibility() throws Exception {
+        SigningKey key = manager.activeKey();
+        Instant now = Instant.now();
+        String[] roles = {"manager", "surfer"};
+        String subject = "al\"i<c>e/\u00e9\t\u2028";
+
+        String nimbus = manager.nimbusAccessToken(key, "api", subject, " resource.read  resource.write ", roles, 6L, "jti-1", now);
+        String template = manager.templateAccessToken(key, "api", subject, " resource.read  resource.write ", roles, 6L, "jti-1", now);
+        assertEquals(nimbus, template);
+        assertEquals(manager.nimbusAccessToken(key, "api", "bob", "read", null, null, "jti-2", now),
+                manager.templateAccessToken(key, "api", "bob", "read", null, null, "jti-2", now));
+        assertEquals(manager.nimbusRefreshToken(key, "api", subject, "resource.read", "family", "jti-3", now),
+                manager.templateRefreshToken(key, "api", subject, "resource.read", "family", "jti-3", now));
+
+        String fresh = manager.templateAccessToken(key, "api", "alice", "read", roles, 6L, JtiGenerator.next(), now);
+        assertTrue(manager.validateAccessToken(fresh).isPresent());
+        String refresh = manager.templateRefreshToken(key, "api", "alice", "read", JtiGenerator.next(), JtiGenerator.next(), now);
+        assertTrue(manager.validateRefreshToken(refresh).isPresent());
+    }
+
+    @Test
+    public void testRolesMaskClaim() {
+        String token = manager.generateAccessToken("api", "carol", "resource.read",
+                new String[]{"Surfer", "Administrator"}, 0b101L);
+        VerifiedToken verified = manager.authenticateAccessToken(token).orElseThrow();
+        assertEquals(0b101L, verified.rolesMask());
+        assertTrue(Role.isGranted("Surfer", verified.rolesMask()));
+        assertFalse(Role.isGranted("Moderator", verified.rolesMask()));
+        assertTrue(Role.isGranted("Administrator", verified.rolesMask()));
+        assertFalse(Role.isGranted("root", verified.rolesMask()));
+        assertTrue(Role.isGranted("root", Role.ROOT.getValue()));
+    }
+
+    @Test
+    public void testSignerReuse() throws Exception {
+        OctetKeyPair keyPair = new OctetKeyPairGenerator(Curve.Ed25519).keyID("reuse").generate();
+        SigningKey key = new SigningKey(keyPair);
+        JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("alice").issuer("urn:reuse").build();
+
+        // signer, verifier and header are built once per key
+        assertSame(key.signer(), key.signer());
+        assertSame(key.verifier(), key.verifier());
+        assertSame(key.header(), key.header());
+        assertEquals("reuse", key.header().getKeyID());
+        assertEquals(JOSEObjectType.JWT, key.header().getType());
+
+        // and stay usable across tokens
+        for (int i = 0; i < 3; i++) {
+            SignedJWT jwt = new SignedJWT(key.header(), claims);
+            jwt.sign(key.signer());
+            String token = jwt.serialize();
+            assertTrue(SignedJWT.parse(token).verify(key.verifier()));
+            assertTrue(SignedJWT.parse(token).verify(new Ed25519Verifier(keyPair.toPublicJWK())));
+        }
+    }
+
+    @Test
+    public void testSignerReuseThroughput() throws Exception {
+        OctetKeyPair keyPair = new OctetKeyPairGenerator(Curve.Ed25519).keyID("bench").generate();
+        SigningKey key = new SigningKey(keyPair);
+        JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("alice").issuer("urn:bench").build();
+        String token = issue(key, claims, false);
+        int rounds = 6;
+        int operations = 200;
+
+        // warm both paths up, then alternate them so that neither runs on a colder JIT or heap
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = -3; round < rounds; round++) {
+            for (int variant = 0; variant < 2; variant++) {
+                boolean reuse = (round + variant) % 2 == 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    issue(key, claims, reuse);
+                }
+                long issued = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    assertTrue(SignedJWT.parse(token).verify(reuse ? key.verifier() : new Ed25519Verifier(keyPair.toPublicJWK())));
+                }
+                long validated = System.nanoTime() - start;
+                if (round >= 0) {
+                    int slot = reuse ? 1 : 0;
+                    best[slot] = Math.min(best[slot], issued);
+                    best[2 + slot] = Math.min(best[2 + slot], validated);
+                }
+            }
+        }
+        LOGGER.info(String.format("issue: %.0f -> %.0f ops/s, validate: %.0f -> %.0f ops/s",
+                operations * 1e9 / best[0], operations * 1e9 / best[1],
+                operations * 1e9 / best[2], operations * 1e9 / best[3]));
+    }
+
+    /**
+     * @param reuse sign with the key's signer and header, else build them for the token as before
+     */
+    private static String issue(SigningKey key, JWTClaimsSet claims, boolean reuse) throws Exception {
+        if (reuse) {
+            SignedJWT jwt = new SignedJWT(key.header(), claims);
+            jwt.sign(key.signer());
+            return jwt.serialize();
+        }
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.EdDSA)
+                .keyID(key.header().getKeyID()).type(JOSEObjectType.JWT).build(), claims);
+        jwt.sign(new Ed25519Signer(key.keyPair()));
+        return jwt.serialize();
+    }
+
     @Test
     public void testXChaCha20Poly1305() throws GeneralSecurityException {
         String associatedData = "urn:phoenix:code:dummy_random:more_info";
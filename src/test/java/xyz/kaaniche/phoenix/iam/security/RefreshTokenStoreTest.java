@@ -0,0 +1,49 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RefreshTokenStoreTest {
+
+    @Test
+    public void testRotationAndReplay() {
+        RefreshTokenStore store = new RefreshTokenStore();
+        long now = 1_800_000_000L;
+        long exp = now + JwtManager.REFRESH_TOKEN_LIFETIME_SECONDS;
+        String family = UUID.randomUUID().toString();
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+
+        assertEquals(RefreshTokenStore.Outcome.ROTATED, store.consume(first, family, exp, now));
+        assertEquals(RefreshTokenStore.Outcome.ROTATED, store.consume(second, family, exp + 10, now + 10));
+        // replaying the first token revokes the family, including the second token's successor
+        assertEquals(RefreshTokenStore.Outcome.REPLAYED, store.consume(first, family, exp, now + 20));
+        assertEquals(RefreshTokenStore.Outcome.REVOKED,
+                store.consume(UUID.randomUUID().toString(), family, exp + 30, now + 30));
+        assertEquals(2, store.size());
+
+        // entries go away with their expiration
+        store.expire(exp + 3600);
+        assertEquals(RefreshTokenStore.Outcome.ROTATED, store.consume(UUID.randomUUID().toString(),
+                UUID.randomUUID().toString(), exp + 7200, exp + 3600));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testBoundedMemory() {
+        ExpiringIdSet set = new ExpiringIdSet(60, 3600, 1000);
+        int added = 0;
+        for (int i = 1; i <= 5000; i++) {
+            if (set.add(i, i, 1000) == ExpiringIdSet.Insertion.ADDED) added++;
+        }
+        assertEquals(set.size(), added);
+        assertEquals(ExpiringIdSet.Insertion.FULL, set.add(-1, -1, 1000));
+        assertEquals(ExpiringIdSet.Insertion.PRESENT, set.add(1, 1, 1000));
+        set.expire(1020);
+        assertEquals(0, set.size());
+        assertEquals(ExpiringIdSet.Insertion.ADDED, set.add(-1, -1, 2000));
+    }
+}
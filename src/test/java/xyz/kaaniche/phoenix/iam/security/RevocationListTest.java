@@ -0,0 +1,77 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RevocationListTest {
+
+    @Test
+    public void testRevocation() {
+        long now = Instant.now().getEpochSecond();
+        TimingWheel wheel = new TimingWheel(1, 64, 3, now);
+        RevocationList revocations = new RevocationList(wheel);
+        String jti = UUID.randomUUID().toString();
+
+        assertFalse(revocations.isRevoked(jti, "alice", now));
+        revocations.revokeToken(jti);
+        assertTrue(revocations.isRevoked(jti, "alice", now));
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(revocations.isRevoked(UUID.randomUUID().toString(), "alice", now));
+        }
+
+        revocations.revokeSubject("bob");
+        assertTrue(revocations.isRevoked(UUID.randomUUID().toString(), "bob", now));
+        // tokens issued after the revocation are accepted again
+        assertFalse(revocations.isRevoked(UUID.randomUUID().toString(), "bob", now + 3600));
+
+        wheel.advance(now + 1);
+        assertEquals(2, revocations.size());
+        assertTrue(revocations.isRevoked(jti, "alice", now));
+        // kept as long as a refresh token issued before the revocation can be presented
+        wheel.advance(now + JwtManager.REFRESH_TOKEN_LIFETIME_SECONDS);
+        assertTrue(revocations.isRevoked(UUID.randomUUID().toString(), "bob", now));
+        wheel.advance(now + 24 * 3600);
+        assertEquals(0, revocations.size());
+        assertFalse(revocations.isRevoked(jti, "alice", now));
+        assertFalse(revocations.isRevoked(UUID.randomUUID().toString(), "bob", now));
+    }
+
+    @Test
+    public void testRevokeWhileExpiring() throws Exception {
+        long now = Instant.now().getEpochSecond();
+        RevocationList revocations = new RevocationList(new TimingWheel(1, 64, 3, now));
+        // more dropped ids than live ones: every expiry rebuilds the filter
+        List<String> dropped = Collections.nCopies(10_000, "expired");
+        AtomicBoolean revoking = new AtomicBoolean(true);
+        Thread expiry = new Thread(() -> {
+            while (revoking.get()) {
+                revocations.expireIds(dropped);
+            }
+        });
+        expiry.start();
+        List<String> revoked = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                String jti = UUID.randomUUID().toString();
+                revocations.revokeToken(jti);
+                revoked.add(jti);
+            }
+        } finally {
+            revoking.set(false);
+            expiry.join();
+        }
+        for (String jti : revoked) {
+            assertTrue(revocations.isRevoked(jti, "alice", now));
+        }
+    }
+}
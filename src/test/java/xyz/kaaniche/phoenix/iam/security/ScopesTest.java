@@ -0,0 +1,33 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScopesTest {
+
+    @Test
+    public void testCanonical() {
+        String canonical = "openid profile resource:read";
+        assertTrue(Scopes.isCanonical(canonical));
+        assertSame(canonical, Scopes.canonical(canonical));
+        assertTrue(Scopes.isCanonical(""));
+
+        assertFalse(Scopes.isCanonical("profile openid"));
+        assertFalse(Scopes.isCanonical("openid openid"));
+        assertFalse(Scopes.isCanonical(" openid"));
+        assertFalse(Scopes.isCanonical("openid "));
+        assertFalse(Scopes.isCanonical("openid  profile"));
+        assertFalse(Scopes.isCanonical("openid\tprofile"));
+        // a prefix sorts first
+        assertTrue(Scopes.isCanonical("read read:all"));
+        assertFalse(Scopes.isCanonical("read:all read"));
+
+        assertEquals(canonical, Scopes.canonical("\tresource:read  openid profile openid \n"));
+        assertEquals("", Scopes.canonical("   "));
+        assertEquals("", Scopes.canonical(null));
+    }
+}
@@ -1,7 +1,11 @@
 package xyz.kaaniche.phoenix.iam.security;
 
+import de.mkammerer.argon2.Argon2Factory;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestPassword {
@@ -11,4 +15,21 @@ public class TestPassword {
         System.out.println(hash);
         assertTrue(Argon2Utility.check(hash,"fLGVAI2KKzj6C1aXRYwLDbztILRatmBVRXribg/QMynib8kOMK293LJoAKOrNmOI".toCharArray()));
     }
+
+    @Test
+    public void rehashOnPolicyChange(){
+        String legacy = Argon2Factory.create(Argon2Factory.Argon2Types.ARGON2id, 16, 32)
+                .hash(1, 1024, 1, "correct horse".toCharArray());
+        assertTrue(Argon2Utility.needsRehash(legacy));
+
+        assertNull(Argon2Utility.verify(legacy, "wrong horse".toCharArray()).rehash());
+        Argon2Utility.Verification verification = Argon2Utility.verify(legacy, "correct horse".toCharArray());
+        assertTrue(verification.valid());
+        assertNotNull(verification.rehash());
+        assertFalse(Argon2Utility.needsRehash(verification.rehash()));
+
+        Argon2Utility.Verification current = Argon2Utility.verify(verification.rehash(), "correct horse".toCharArray());
+        assertTrue(current.valid());
+        assertNull(current.rehash());
+    }
 }
@@ -0,0 +1,57 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testExpiry() {
+        long now = 1_800_000_000L;
+        // 8 ticks on the first level, 64 on the second
+        TimingWheel wheel = new TimingWheel(1, 8, 2, now);
+        List<List<String>> batches = new ArrayList<>();
+        TimingWheel.Channel<String> channel = wheel.channel(batches::add);
+
+        channel.schedule("a", now + 5);
+        channel.schedule("b", now + 5);
+        // on the second level, cascading down to the first one
+        channel.schedule("f", now + 21);
+        TimingWheel.Timeout cancelled = channel.schedule("c", now + 5);
+        // beyond the last level
+        channel.schedule("d", now + 200);
+        assertTrue(channel.cancel(cancelled));
+        assertFalse(channel.cancel(cancelled));
+        assertEquals(4, wheel.size());
+
+        wheel.advance(now + 4);
+        assertTrue(batches.isEmpty());
+        wheel.advance(now + 5);
+        assertEquals(1, batches.size());
+        assertEquals(Set.of("a", "b"), Set.copyOf(batches.get(0)));
+
+        wheel.advance(now + 20);
+        assertEquals(1, batches.size());
+        wheel.advance(now + 21);
+        assertEquals(List.of("f"), batches.get(1));
+
+        // a full revolution of the last level later the far timeout stays put
+        wheel.advance(now + 150);
+        assertEquals(2, batches.size());
+        assertEquals(1, wheel.size());
+        wheel.advance(now + 199);
+        assertEquals(2, batches.size());
+        // a late tick still fires
+        channel.schedule("e", now - 10);
+        wheel.advance(now + 1000);
+        assertEquals(Set.of("d", "e"), Set.copyOf(batches.get(2)));
+        assertEquals(0, wheel.size());
+    }
+}